@@ -2,7 +2,7 @@ package sample.common.constant;
 
 public interface Constants {
 
-	//Flashに渡すキーワード
+	//Flashに渡すキーワード（値はカートの映画のID long[]）
 	static final String SEARCH_MOVIE_VIEW_MOVIES_IN_CART = "searchMovieView.moviesInCart";
 
 }
@@ -1,7 +1,8 @@
 package sample.entity;
 
-public interface IdEntity {
+public interface IdEntity extends Identifiable {
 
+	@Override
 	public long getId();
 
 	public void setId(long id);
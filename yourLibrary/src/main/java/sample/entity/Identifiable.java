@@ -0,0 +1,8 @@
+package sample.entity;
+
+//IDを持つもの。エンティティと、一覧表示用の行(sample.logic.dto)に共通です。
+public interface Identifiable {
+
+	public long getId();
+
+}
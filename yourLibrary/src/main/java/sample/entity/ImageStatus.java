@@ -0,0 +1,16 @@
+package sample.entity;
+
+//ポスター画像の処理状態。アップロード後、縮小版の作成・保存はバックグラウンドで行います。
+//画像のない映画・移行前の画像はnullです。
+public enum ImageStatus {
+
+    //アップロード済み、保存・縮小版の作成中
+    PROCESSING,
+
+    //保存済み（imageHashで表示できる）
+    READY,
+
+    //画像として読めない等で保存できなかった
+    FAILED
+
+}
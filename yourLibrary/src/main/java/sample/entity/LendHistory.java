@@ -4,12 +4,17 @@ import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
@@ -17,10 +22,18 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 
 @Entity
 @Table(name = "LEND_HISTORY")
+//画面ごとの読み込み計画（FetchPlan）で使うグラフ
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = "LendHistory.historyList", attributeNodes = {
+                @NamedAttributeNode("movie"), @NamedAttributeNode("lendUser") }),
+        @NamedEntityGraph(name = "LendHistory.userDashboard", attributeNodes = @NamedAttributeNode("movie")) })
 //貸出履歴
 public class LendHistory implements IdEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    //貸出は件数が多いため、大きめのブロックで確保します
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "LEND_HISTORY_ID_GEN")
+    @TableGenerator(name = "LEND_HISTORY_ID_GEN", table = "ID_SEQUENCE", pkColumnName = "SEQ_NAME",
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "LEND_HISTORY", allocationSize = 500)
     private long id;
 
     //借りた日
@@ -46,14 +59,14 @@ public class LendHistory implements IdEntity {
     @Column(name = "STAR_RATING")
     private double starRating;
 
-    //借りられた『映画』への参照
-    @ManyToOne
+    //借りられた『映画』への参照。一覧では読み込み計画で結合して読みます
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "MOVIE_ID", referencedColumnName = "ID")
     @JsonBackReference
     private Movie movie;
 
     //借りた『ユーザ』への参照
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "LENDUSER_ID", referencedColumnName = "ID")
     @JsonBackReference
     private User lendUser;
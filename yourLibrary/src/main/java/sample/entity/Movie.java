@@ -5,21 +5,32 @@ import java.util.List;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 @Entity
 @Table(name = "MOVIE")
+//カート用の読み込み計画（FetchPlan.CART）。貸出履歴は含めません
+@NamedEntityGraph(name = "Movie.cart", attributeNodes = { @NamedAttributeNode("title"),
+        @NamedAttributeNode("category"), @NamedAttributeNode("outline"), @NamedAttributeNode("isLent"),
+        @NamedAttributeNode("image"), @NamedAttributeNode("imageHash") })
 // 映画
 public class Movie implements IdEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    //IDは『ID採番』(ID_SEQUENCE)の専用行からブロック単位で確保します。ブロックサイズはorm.xmlで変更できます
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "MOVIE_ID_GEN")
+    @TableGenerator(name = "MOVIE_ID_GEN", table = "ID_SEQUENCE", pkColumnName = "SEQ_NAME",
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "MOVIE", allocationSize = 100)
     private long id;
 
     @Column(name = "TITLE", nullable = false)
@@ -34,12 +45,18 @@ public class Movie implements IdEntity {
     @Column(name = "IS_LENT")
     private boolean isLent = false;
 
+    //画像のファイル名。画像データ自体は『映画画像』(MOVIE_IMAGE)に保持します
     @Column(name = "IMAGE")
     private String image;
 
-    @Column(name = "IMG_DAT")
-    @JsonIgnore
-    private byte[] imageData;
+    //画像データのハッシュ（SHA-256の16進）。画像のURLに含め、内容が変わるとURLが変わるようにします
+    @Column(name = "IMAGE_HASH", length = 64)
+    private String imageHash;
+
+    //アップロードした画像の処理状態（ImageStatus）。画像がない場合はnull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "IMAGE_STATUS", length = 16)
+    private ImageStatus imageStatus;
 
     //ユーザが借りた『貸出履歴』コレクション。親のオブジェクトの操作は伝播させます
     @OneToMany(mappedBy = "movie", cascade = CascadeType.ALL)
@@ -104,12 +121,20 @@ public class Movie implements IdEntity {
         this.image = image;
     }
 
-    public byte[] getImageData() {
-        return imageData;
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    public ImageStatus getImageStatus() {
+        return imageStatus;
     }
 
-    public void setImageData(byte[] imageData) {
-        this.imageData = imageData;
+    public void setImageStatus(ImageStatus imageStatus) {
+        this.imageStatus = imageStatus;
     }
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package sample.entity;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "MOVIE_IMAGE")
+// 映画のポスター画像。一覧の検索でBLOBを読まないように、MOVIEから分離しています。
+public class MovieImage {
+    //『映画』と同じIDを使います
+    @Id
+    @Column(name = "MOVIE_ID")
+    private long movieId;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "IMG_DAT")
+    private byte[] imageData;
+
+    //縮小版（JPEG）。元画像が縮小版より小さい場合・作成前はnull
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "THUMB_64")
+    private byte[] thumbnail64;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "THUMB_200")
+    private byte[] thumbnail200;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "THUMB_400")
+    private byte[] thumbnail400;
+
+    public MovieImage() {
+    }
+
+    public MovieImage(long movieId, byte[] imageData) {
+        this.movieId = movieId;
+        this.imageData = imageData;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(long movieId) {
+        this.movieId = movieId;
+    }
+
+    public byte[] getImageData() {
+        return imageData;
+    }
+
+    public void setImageData(byte[] imageData) {
+        this.imageData = imageData;
+    }
+
+    public byte[] getThumbnail64() {
+        return thumbnail64;
+    }
+
+    public void setThumbnail64(byte[] thumbnail64) {
+        this.thumbnail64 = thumbnail64;
+    }
+
+    public byte[] getThumbnail200() {
+        return thumbnail200;
+    }
+
+    public void setThumbnail200(byte[] thumbnail200) {
+        this.thumbnail200 = thumbnail200;
+    }
+
+    public byte[] getThumbnail400() {
+        return thumbnail400;
+    }
+
+    public void setThumbnail400(byte[] thumbnail400) {
+        this.thumbnail400 = thumbnail400;
+    }
+
+}
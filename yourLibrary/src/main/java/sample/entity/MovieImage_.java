@@ -0,0 +1,13 @@
+package sample.entity;
+
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.StaticMetamodel;
+
+@StaticMetamodel(MovieImage.class)
+public class MovieImage_ {
+    public static volatile SingularAttribute<MovieImage, Long> movieId;
+    public static volatile SingularAttribute<MovieImage, byte[]> imageData;
+    public static volatile SingularAttribute<MovieImage, byte[]> thumbnail64;
+    public static volatile SingularAttribute<MovieImage, byte[]> thumbnail200;
+    public static volatile SingularAttribute<MovieImage, byte[]> thumbnail400;
+}
@@ -14,6 +14,7 @@ public class Movie_ {
     public static volatile SingularAttribute<Movie, String> category;
     public static volatile SingularAttribute<Movie, Boolean> isLent;
     public static volatile SingularAttribute<Movie, String> image;
-    public static volatile SingularAttribute<Movie, byte[]> imageData;
+    public static volatile SingularAttribute<Movie, String> imageHash;
+    public static volatile SingularAttribute<Movie, ImageStatus> imageStatus;
     public static volatile ListAttribute<Movie, LendHistory> lendHistories;
 }
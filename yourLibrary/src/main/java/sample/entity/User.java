@@ -9,6 +9,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
@@ -21,7 +22,10 @@ import lombok.Setter;
 public class User implements IdEntity {
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    //採番は『映画』と同じく、ID_SEQUENCEのUSER行から
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "USER_ID_GEN")
+    @TableGenerator(name = "USER_ID_GEN", table = "ID_SEQUENCE", pkColumnName = "SEQ_NAME",
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "USER", allocationSize = 100)
     private long id;
     @Column(name = "ACCOUNT", nullable = false, unique = true)
     private String account;
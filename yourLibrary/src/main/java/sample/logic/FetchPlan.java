@@ -0,0 +1,64 @@
+package sample.logic;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import sample.entity.LendHistory;
+import sample.entity.Movie;
+
+//画面ごとの読み込み計画。エンティティグラフ（名前付き）と、同じSQLで結合して読む参照を持ちます。
+//行数に関係なく、一覧を一定数のSQLで読み込むために使います。
+//結合する参照のパスは、問合せの別名（貸出履歴はh、映画はm）から書きます。
+public enum FetchPlan {
+
+    //貸出履歴一覧（全件）。映画・ユーザを結合して読む
+    HISTORY_LIST("LendHistory.historyList", LendHistory.class, "h.movie", "h.lendUser"),
+
+    //ユーザごとの貸出履歴。ユーザは条件で決まるため、映画だけを結合して読む
+    USER_DASHBOARD("LendHistory.userDashboard", LendHistory.class, "h.movie"),
+
+    //カート。映画の列だけを読み、貸出履歴は読まない
+    CART("Movie.cart", Movie.class);
+
+    private static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+
+    private static final String LEFT_JOIN_FETCH = "eclipselink.left-join-fetch";
+
+    private final String graphName;
+
+    private final Class<?> rootType;
+
+    private final String[] joinFetches;
+
+    FetchPlan(String graphName, Class<?> rootType, String... joinFetches) {
+        this.graphName = graphName;
+        this.rootType = rootType;
+        this.joinFetches = joinFetches;
+    }
+
+    public String getGraphName() {
+        return graphName;
+    }
+
+    public Class<?> getRootType() {
+        return rootType;
+    }
+
+    //問合せの対象と読み込み計画の対象が一致しなければ例外
+    public FetchPlan requireRoot(Class<?> type) {
+        if (rootType != type) {
+            throw new IllegalArgumentException(name() + " は " + rootType.getSimpleName() + " 用の読み込み計画です: "
+                    + type.getSimpleName());
+        }
+        return this;
+    }
+
+    public <T> TypedQuery<T> applyTo(EntityManager em, TypedQuery<T> query) {
+        query.setHint(LOAD_GRAPH, em.getEntityGraph(graphName));
+        for (String path : joinFetches) {
+            query.setHint(LEFT_JOIN_FETCH, path);
+        }
+        return query;
+    }
+
+}
@@ -0,0 +1,56 @@
+package sample.logic;
+
+import java.io.Serializable;
+
+import sample.entity.LendHistory;
+
+//貸出の結果。他のユーザが先に借りていた場合は例外ではなくALREADY_LENTを返します。
+public class LendResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        //貸し出した
+        LENT,
+        //既に貸出中だった
+        ALREADY_LENT
+    }
+
+    private final long movieId;
+
+    private final Status status;
+
+    private final LendHistory history;
+
+    private LendResult(long movieId, Status status, LendHistory history) {
+        this.movieId = movieId;
+        this.status = status;
+        this.history = history;
+    }
+
+    public static LendResult lent(long movieId, LendHistory history) {
+        return new LendResult(movieId, Status.LENT, history);
+    }
+
+    public static LendResult alreadyLent(long movieId) {
+        return new LendResult(movieId, Status.ALREADY_LENT, null);
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    //貸し出せなかった場合はnull
+    public LendHistory getHistory() {
+        return history;
+    }
+
+    public boolean isLent() {
+        return status == Status.LENT;
+    }
+
+}
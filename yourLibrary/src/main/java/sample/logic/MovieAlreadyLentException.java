@@ -0,0 +1,19 @@
+package sample.logic;
+
+//貸し出そうとした映画が既に貸出中だった（MovieManager#lendMovie）
+public class MovieAlreadyLentException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long movieId;
+
+    public MovieAlreadyLentException(long movieId) {
+        super("movie is already lent: " + movieId);
+        this.movieId = movieId;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+}
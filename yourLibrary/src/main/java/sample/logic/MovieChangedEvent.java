@@ -0,0 +1,55 @@
+package sample.logic;
+
+import sample.entity.Movie;
+
+//映画の登録・更新・削除を通知するCDIイベント。
+//発火時点の値を保持するので、トランザクション完了後のオブザーバーからも安全に参照できます。
+public class MovieChangedEvent {
+
+    private final long id;
+
+    private final String title;
+
+    private final String category;
+
+    private final String outline;
+
+    private final boolean removed;
+
+    private MovieChangedEvent(long id, String title, String category, String outline, boolean removed) {
+        this.id = id;
+        this.title = title;
+        this.category = category;
+        this.outline = outline;
+        this.removed = removed;
+    }
+
+    public static MovieChangedEvent updated(Movie movie) {
+        return new MovieChangedEvent(movie.getId(), movie.getTitle(), movie.getCategory(), movie.getOutline(), false);
+    }
+
+    public static MovieChangedEvent removed(long id) {
+        return new MovieChangedEvent(id, null, null, null, true);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getOutline() {
+        return outline;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+}
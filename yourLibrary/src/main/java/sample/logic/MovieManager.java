@@ -1,10 +1,17 @@
 package sample.logic;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import sample.entity.ImageStatus;
 import sample.entity.LendHistory;
 import sample.entity.Movie;
+import sample.entity.MovieImage;
 import sample.entity.User;
+import sample.logic.dto.LendHistoryRow;
+import sample.logic.dto.MovieRow;
+import sample.logic.image.ThumbnailSize;
 
 public interface MovieManager {
 
@@ -12,12 +19,27 @@ public interface MovieManager {
 
 	Movie findById(long id);
 
+	Map<Long, Movie> findByIds(Collection<Long> ids);
+
 	List<LendHistory> findAllLendHistory();
 
+	List<LendHistory> findAllLendHistory(FetchPlan plan);
+
+	//既に貸出中の場合はMovieAlreadyLentException。例外にしない場合はtryLendMovieを使う
 	LendHistory lendMovie(Movie movie, User user);
 
+	LendResult tryLendMovie(Movie movie, User user);
+
+	List<LendResult> lendMovies(Collection<Movie> movies, User user);
+
+	List<LendResult> lendMoviesById(Collection<Long> movieIds, User user);
+
 	LendHistory returnMovie(LendHistory history2);
 
+	List<LendHistory> returnMovies(Collection<LendHistory> histories);
+
+	int returnMoviesById(Collection<Long> historyIds);
+
 	List<Movie> findAll();
 
 	Movie updateMovie(Movie find1);
@@ -40,6 +62,32 @@ public interface MovieManager {
 
 	List<Movie> searchMovie(String title, String category, String outline, Boolean isLent);
 
+	List<MovieRow> searchMovieRows(MovieSearchCondition condition, MovieSeekKey after, int first, int pageSize);
+
+	long countMovie(MovieSearchCondition condition);
+
 	List<LendHistory> findAllLendHistoryByUser(Long lendUserId);
 
+	List<LendHistory> findAllLendHistoryByUser(Long lendUserId, FetchPlan plan);
+
+	List<Movie> findMovies(Collection<Long> ids, FetchPlan plan);
+
+	List<LendHistoryRow> findLendHistoryRowsByUser(long lendUserId);
+
+	byte[] findImageData(long movieId);
+
+	byte[] findImageData(long movieId, int size);
+
+	MovieImage saveImageData(long movieId, byte[] imageData);
+
+	MovieImage saveImageData(long movieId, byte[] imageData, Map<ThumbnailSize, byte[]> thumbnails);
+
+	boolean saveThumbnails(long movieId, Map<ThumbnailSize, byte[]> thumbnails);
+
+	List<Long> findImageIdsWithoutThumbnails(long afterId, int limit);
+
+	boolean completeImage(long movieId, String imageHash);
+
+	boolean updateImageStatus(long movieId, ImageStatus status);
+
 }
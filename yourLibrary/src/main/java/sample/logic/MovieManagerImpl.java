@@ -1,36 +1,138 @@
 package sample.logic;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import lombok.Getter;
 import lombok.Setter;
+import sample.entity.ImageStatus;
 import sample.entity.LendHistory;
 import sample.entity.Movie;
+import sample.entity.MovieImage;
 import sample.entity.User;
+import sample.logic.cache.CoalescingLoader;
+import sample.logic.cache.EntityCache;
+import sample.logic.dto.LendHistoryRow;
+import sample.logic.dto.MovieRow;
+import sample.logic.image.ContentHash;
+import sample.logic.image.ImageStore;
+import sample.logic.image.ThumbnailSize;
 import sample.util.Service;
+import sample.util.collection.Lists;
+import sample.util.collection.LongHashSet;
 
 @Service
 public class MovieManagerImpl implements MovieManager {
 
+    //ソート・フィルタに使える列
+    private static final List<String> SORT_FIELDS = Arrays.asList("title", "category", "outline", "isLent");
+    private static final List<String> FILTER_FIELDS = Arrays.asList("title", "category", "outline");
+    private static final List<String> INDEXED_FIELDS = Arrays.asList("title", "outline");
+
+    //一括更新でIN句に渡すIDの最大件数
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    //findByIdsでIN句に渡すIDの件数
+    private static final int FIND_CHUNK_SIZE = Integer.getInteger("yourlibrary.findByIds.chunkSize", 500);
+
+    //findByIdsで同時の要求をまとめる待ち時間（マイクロ秒）
+    private static final long COALESCE_WINDOW_MICROS = Long.getLong("yourlibrary.findByIds.windowMicros", 500);
+
+    //インデックスで解決したIDをIN句で渡す上限。超える場合はLIKEで検索する
+    private static final int MAX_INDEX_CANDIDATES = Integer.getInteger("yourlibrary.search.maxIndexCandidates", 1000);
+
     @PersistenceContext(unitName = "yourlibrary")
     @Getter
     @Setter
     private EntityManager em;
 
+    //タイトル・あらすじの部分一致検索用。未設定（単体テスト等）の場合はLIKEで検索する
+    @Inject
+    @Setter
+    private MovieTextIndex textIndex;
+
+    @Inject
+    private Event<MovieChangedEvent> movieChanged;
+
+    //ポスター画像の保存先。未設定（単体テスト等）の場合はMOVIE_IMAGEに保存する
+    @Inject
+    @Setter
+    private ImageStore imageStore;
+
+    @Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+    private TransactionSynchronizationRegistry txRegistry;
+
+    //IDとタイトルで引く『映画』のキャッシュ（画像・貸出履歴は含まない）
+    private final EntityCache<Movie> movieCache = new EntityCache<>("Movie",
+            Integer.getInteger("yourlibrary.cache.movie.maxSize", 10000),
+            Integer.getInteger("yourlibrary.cache.movie.ttlSeconds", 300), TimeUnit.SECONDS,
+            MovieManagerImpl::copyOf, Movie::getTitle);
+
+    //findByIdsで、キャッシュにない映画を他のスレッドの要求とまとめて読み込む
+    private final CoalescingLoader<Movie> movieLoader = new CoalescingLoader<>(COALESCE_WINDOW_MICROS,
+            TimeUnit.MICROSECONDS, this::loadByIds, MovieManagerImpl::copyOf);
+
+    @PostConstruct
+    public void postConstruct() {
+        movieCache.register();
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        movieCache.unregister();
+    }
+
+    //キャッシュに保持する値のコピー。関連（貸出履歴）は含まない
+    private static Movie copyOf(Movie movie) {
+        final Movie copy = new Movie();
+        copy.setId(movie.getId());
+        copy.setTitle(movie.getTitle());
+        copy.setOutline(movie.getOutline());
+        copy.setCategory(movie.getCategory());
+        copy.setIsLent(movie.getIsLent());
+        copy.setImage(movie.getImage());
+        copy.setImageHash(movie.getImageHash());
+        copy.setImageStatus(movie.getImageStatus());
+        return copy;
+    }
+
+    private void invalidateMovie(long id) {
+        movieCache.invalidate(id, txRegistry);
+    }
+
     @Override
     public Movie createMovie(String title) {
         final Movie movie = new Movie();
@@ -39,18 +141,47 @@ public class MovieManagerImpl implements MovieManager {
         //		final EntityTransaction tx = em.getTransaction();
         //		tx.begin();
         em.persist(movie);
+        movieCache.markWritten(txRegistry);
+        fireMovieChanged(MovieChangedEvent.updated(movie));
         //		tx.commit();
         //		em.close();
         return movie;
     }
 
+    //キャッシュにあればコピーを返す（貸出履歴は含まない）
     @Override
     public Movie findById(long id) {
-        //		EntityManager em = getEm();
-        final Movie movie = em.find(Movie.class, id);
-        em.clear();
-        //		em.close();
-        return movie;
+        return movieCache.get(id, txRegistry, key -> {
+            //		EntityManager em = getEm();
+            final Movie movie = em.find(Movie.class, key);
+            em.clear();
+            //		em.close();
+            return movie;
+        });
+    }
+
+    //IDでまとめて取得する（キャッシュと同じく貸出履歴は含まない）。見つからないIDは含まない。
+    //このトランザクションで映画を更新していなければ、同時に来た他の要求とまとめて読み込む。
+    //更新していれば、コミット前の値を他のトランザクションと共有しないよう、自分で読み込みキャッシュにも入れない
+    @Override
+    public Map<Long, Movie> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return movieCache.getAll(ids, txRegistry,
+                movieCache.isWritten(txRegistry) ? this::loadByIds : movieLoader::load);
+    }
+
+    private Map<Long, Movie> loadByIds(Collection<Long> ids) {
+        final Map<Long, Movie> result = new HashMap<>();
+        for (List<Long> chunk : Lists.partition(new ArrayList<>(ids), FIND_CHUNK_SIZE)) {
+            final TypedQuery<Movie> q = em.createQuery("select m from Movie m where m.id in :ids", Movie.class);
+            q.setParameter("ids", chunk);
+            for (Movie movie : q.getResultList()) {
+                result.put(movie.getId(), movie);
+            }
+        }
+        return result;
     }
 
     @Override
@@ -64,15 +195,17 @@ public class MovieManagerImpl implements MovieManager {
 
     @Override
     public Movie findByTitle(String title) {
-        //		EntityManager em = getEm();
-        final TypedQuery<Movie> q = em.createQuery("select m from Movie m where m.title=:title", Movie.class);
-        q.setParameter("title", title);
-        final List<Movie> result = q.getResultList();
-        //		em.close();
-        if (result.size() > 0) {
-            return result.get(0);
-        }
-        return null;
+        return movieCache.getByNaturalKey(title, txRegistry, key -> {
+            //		EntityManager em = getEm();
+            final TypedQuery<Movie> q = em.createQuery("select m from Movie m where m.title=:title", Movie.class);
+            q.setParameter("title", key);
+            final List<Movie> result = q.getResultList();
+            //		em.close();
+            if (result.size() > 0) {
+                return result.get(0);
+            }
+            return null;
+        });
     }
 
     @Override
@@ -83,6 +216,8 @@ public class MovieManagerImpl implements MovieManager {
         if (!em.contains(movie)) {
             movie = em.merge(movie);
         }
+        invalidateMovie(movie.getId());
+        fireMovieChanged(MovieChangedEvent.updated(movie));
         //		tx.commit();
         //		em.close();
         return movie;
@@ -97,46 +232,194 @@ public class MovieManagerImpl implements MovieManager {
         }
         //		final EntityTransaction tx = em.getTransaction();
         //		tx.begin();
+        //画像は別テーブルのため、BLOBを読み込まずに削除する
+        em.createQuery("delete from MovieImage i where i.movieId = :movieId")
+                .setParameter("movieId", find.getId())
+                .executeUpdate();
         em.remove(find);
+        invalidateMovie(find.getId());
+        fireMovieChanged(MovieChangedEvent.removed(find.getId()));
         //		tx.commit();
         //		em.close();
         return true;
     }
 
+    private void fireMovieChanged(MovieChangedEvent event) {
+        if (movieChanged != null) {
+            movieChanged.fire(event);
+        }
+    }
+
+    //既に貸出中の場合はMovieAlreadyLentException（nullは返さない）。結果の種類で分ける場合はtryLendMovieを使う
     @Override
     public LendHistory lendMovie(Movie movie, User user) {
-        final LendHistory history = new LendHistory();
-        history.setLendDate(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
+        final LendResult result = tryLendMovie(movie, user);
+        if (!result.isLent()) {
+            throw new MovieAlreadyLentException(movie.getId());
+        }
+        return result.getHistory();
+    }
+
+    @Override
+    public LendResult tryLendMovie(Movie movie, User user) {
+        if (!markLent(movie.getId())) {
+            return LendResult.alreadyLent(movie.getId());
+        }
         //返却日計算：
         //  カレント日＋１週間
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DAY_OF_WEEK, 7);
-        history.setDueDate(calendar.getTime());
+        final LendHistory history = createLendHistory(movie, em.getReference(User.class, user.getId()),
+                Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)), calendar.getTime());
+        return LendResult.lent(movie.getId(), history);
+    }
 
-        history.setMovie(movie);
-        history.setLendUser(user);
-        //		EntityManager em = getEm();
-        //		final EntityTransaction tx = em.getTransaction();
-        //		tx.begin();
-        em.persist(history);
-        if (!em.contains(movie)) {
-            movie = em.merge(movie);
+    @Override
+    public List<LendResult> lendMovies(Collection<Movie> movies, User user) {
+        final List<Long> movieIds = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            movieIds.add(movie.getId());
         }
-        movie.setIsLent(true);
-        em.persist(movie);
+        final List<LendResult> results = lendMoviesById(movieIds, user);
+        int i = 0;
+        for (Movie movie : movies) {
+            if (results.get(i++).isLent()) {
+                movie.setIsLent(true);
+            }
+        }
+        return results;
+    }
 
-        final ArrayList<LendHistory> historys = new ArrayList<LendHistory>();
-        historys.add(history);
-        movie.setLendHistories(historys);
-        if (!em.contains(user)) {
-            user = em.merge(user);
+    //カートの映画をまとめて貸し出す。既に貸出中だった映画はALREADY_LENTとして返し、他の映画の貸出は続ける。
+    //先に貸出中フラグをまとめて更新してから、貸し出せた映画の履歴をまとめてINSERTする（バッチ書き込み）
+    @Override
+    public List<LendResult> lendMoviesById(Collection<Long> movieIds, User user) {
+        final List<LendResult> results = new ArrayList<>(movieIds.size());
+        if (movieIds.isEmpty()) {
+            return results;
         }
-        user.setLendHistories(historys);
-        //		tx.commit();
-        //		em.close();
+        final LongHashSet lent = markLent(movieIds);
+
+        final Date lendDate = Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC));
+        //返却日計算：
+        //  カレント日＋１週間
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_WEEK, 7);
+        final Date dueDate = calendar.getTime();
+
+        //関連は参照だけ設定し、ユーザを読み込まない
+        final User lendUser = em.getReference(User.class, user.getId());
+        for (long movieId : movieIds) {
+            //同じIDが重複していた場合、2件目以降は貸出中として返す
+            if (lent.remove(movieId)) {
+                results.add(LendResult.lent(movieId, createLendHistory(movieId, lendUser, lendDate, dueDate)));
+            } else {
+                results.add(LendResult.alreadyLent(movieId));
+            }
+        }
+        em.flush();
+        return results;
+    }
+
+    //貸出中でない場合だけ貸出中にする（条件付きUPDATE）。行ロックはトランザクションの終了まで保持されるため、
+    //同じ映画を同時に借りようとしても1人だけが成功し、他は先の貸出のコミットを待ってからfalseになる
+    private boolean markLent(long movieId) {
+        final int updated = em.createQuery("update Movie m set m.isLent = true where m.id = :id and m.isLent = false")
+                .setParameter("id", movieId)
+                .executeUpdate();
+        invalidateMovie(movieId);
+        return updated > 0;
+    }
+
+    //まとめて貸出中にし、貸出中にできた映画のIDを返す。
+    //IDの順に行ロックを取る（SELECT ... FOR UPDATE）ことで、重なるカートを逆の順で貸し出してもデッドロックしない。
+    //ロックした行のうち貸出中でないものを、IN句の一括UPDATEで貸出中にする（ロックはコミットまで保持される）
+    private LongHashSet markLent(Collection<Long> movieIds) {
+        final LongHashSet lent = new LongHashSet(movieIds.size());
+        final List<Long> sorted = new ArrayList<>(new TreeSet<>(movieIds));
+        for (List<Long> ids : Lists.partition(sorted, BULK_CHUNK_SIZE)) {
+            final List<Long> available = em
+                    .createQuery("select m.id from Movie m where m.id in :ids and m.isLent = false order by m.id",
+                            Long.class)
+                    .setParameter("ids", ids)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList();
+            if (available.isEmpty()) {
+                continue;
+            }
+            em.createQuery("update Movie m set m.isLent = true where m.id in :ids and m.isLent = false")
+                    .setParameter("ids", available)
+                    .executeUpdate();
+            for (long movieId : available) {
+                lent.add(movieId);
+                invalidateMovie(movieId);
+            }
+        }
+        return lent;
+    }
+
+    private LendHistory createLendHistory(long movieId, User lendUser, Date lendDate, Date dueDate) {
+        final LendHistory history = new LendHistory();
+        history.setLendDate(lendDate);
+        history.setDueDate(dueDate);
+        history.setMovie(em.getReference(Movie.class, movieId));
+        history.setLendUser(lendUser);
+        em.persist(history);
         return history;
     }
 
+    @Override
+    public List<LendHistory> returnMovies(Collection<LendHistory> histories) {
+        final List<LendHistory> result = new ArrayList<>(histories);
+        final List<Long> historyIds = new ArrayList<>(histories.size());
+        for (LendHistory history : histories) {
+            historyIds.add(history.getId());
+        }
+        returnMoviesById(historyIds);
+
+        final Date returnDate = Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC));
+        for (LendHistory history : result) {
+            if (history.getReturnDate() == null) {
+                history.setReturnDate(returnDate);
+            }
+            if (history.getMovie() != null) {
+                history.getMovie().setIsLent(false);
+            }
+        }
+        return result;
+    }
+
+    //まとめて返却する。未返却の履歴の返却日と、その映画の貸出中フラグを、それぞれIN句の一括UPDATEで更新する
+    @Override
+    public int returnMoviesById(Collection<Long> historyIds) {
+        if (historyIds.isEmpty()) {
+            return 0;
+        }
+        final Date returnDate = Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC));
+        int returnCount = 0;
+        for (List<Long> ids : Lists.partition(new ArrayList<>(historyIds), BULK_CHUNK_SIZE)) {
+            final List<Long> movieIds = em
+                    .createQuery("select h.movie.id from LendHistory h where h.id in :ids and h.returnDate is null",
+                            Long.class)
+                    .setParameter("ids", ids)
+                    .getResultList();
+            returnCount += em.createQuery("update LendHistory h set h.returnDate = :returnDate"
+                    + " where h.id in :ids and h.returnDate is null")
+                    .setParameter("returnDate", returnDate, TemporalType.DATE)
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            if (!movieIds.isEmpty()) {
+                em.createQuery("update Movie m set m.isLent = false where m.id in :ids")
+                        .setParameter("ids", movieIds)
+                        .executeUpdate();
+            }
+            for (long movieId : movieIds) {
+                invalidateMovie(movieId);
+            }
+        }
+        return returnCount;
+    }
+
     @Override
     public LendHistory updateLendHistory(LendHistory history) {
         //		EntityManager em = getEm();
@@ -165,6 +448,7 @@ public class MovieManagerImpl implements MovieManager {
         }
         movie.setIsLent(false);
         tx.commit();
+        invalidateMovie(movie.getId());
         //		em.close();
         return history;
     }
@@ -195,24 +479,62 @@ public class MovieManagerImpl implements MovieManager {
 
     @Override
     public List<LendHistory> findAllLendHistory() {
+        return findAllLendHistory(FetchPlan.HISTORY_LIST);
+    }
+
+    @Override
+    public List<LendHistory> findAllLendHistory(FetchPlan plan) {
+        plan.requireRoot(LendHistory.class);
         final TypedQuery<LendHistory> q = em.createQuery("select h from LendHistory h order by h.movie.title asc",
                 LendHistory.class);
-        final List<LendHistory> result = q.getResultList();
+        final List<LendHistory> result = plan.applyTo(em, q).getResultList();
         //		em.close();
         return result;
     }
 
     @Override
     public List<LendHistory> findAllLendHistoryByUser(Long lendUserId) {
+        return findAllLendHistoryByUser(lendUserId, FetchPlan.USER_DASHBOARD);
+    }
+
+    @Override
+    public List<LendHistory> findAllLendHistoryByUser(Long lendUserId, FetchPlan plan) {
+        plan.requireRoot(LendHistory.class);
         final TypedQuery<LendHistory> q = em.createQuery(
                 "select h from LendHistory h where h.lendUser.id =:lendUserId order by h.movie.title asc",
                 LendHistory.class);
         q.setParameter("lendUserId", lendUserId);
-        final List<LendHistory> result = q.getResultList();
+        final List<LendHistory> result = plan.applyTo(em, q).getResultList();
         //		em.close();
         return result;
     }
 
+    //IDでまとめて読み込み、タイトル順で返す。IN句はBULK_CHUNK_SIZE件ずつ
+    @Override
+    public List<Movie> findMovies(Collection<Long> ids, FetchPlan plan) {
+        plan.requireRoot(Movie.class);
+        final List<Movie> result = new ArrayList<>(ids.size());
+        for (List<Long> chunk : Lists.partition(new ArrayList<>(ids), BULK_CHUNK_SIZE)) {
+            final TypedQuery<Movie> q = em.createQuery("select m from Movie m where m.id in :ids", Movie.class);
+            q.setParameter("ids", chunk);
+            result.addAll(plan.applyTo(em, q).getResultList());
+        }
+        result.sort(Comparator.comparing(Movie::getTitle));
+        return result;
+    }
+
+    //貸出履歴一覧用。映画はタイトル・カテゴリだけを結合して読み込む
+    @Override
+    public List<LendHistoryRow> findLendHistoryRowsByUser(long lendUserId) {
+        final TypedQuery<LendHistoryRow> q = em.createQuery(
+                "select new sample.logic.dto.LendHistoryRow(h.id, m.id, m.title, m.category,"
+                        + " h.lendDate, h.dueDate, h.returnDate)"
+                        + " from LendHistory h join h.movie m where h.lendUser.id = :lendUserId order by m.title asc",
+                LendHistoryRow.class);
+        q.setParameter("lendUserId", lendUserId);
+        return q.getResultList();
+    }
+
     @Override
     public List<String> getEnteredTitles() {
         TypedQuery<String> q = em.createQuery("select distinct m.title from Movie m order by m.title asc",
@@ -241,30 +563,354 @@ public class MovieManagerImpl implements MovieManager {
     // http://tshix.hatenablog.com/entry/2015/08/04/010443
     @Override
     public List<Movie> searchMovie(String title, String category, String outline, Boolean isLent) {
+        MovieSearchCondition condition = new MovieSearchCondition();
+        condition.setTitle(title);
+        condition.setCategory(category);
+        condition.setOutline(outline);
+        condition.setIsLent(isLent);
+
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Movie> query = cb.createQuery(Movie.class);
         Root<Movie> root = query.from(Movie.class);
         query.select(root);
 
+        List<Predicate> predicates = createPredicates(cb, root, condition);
+        if (predicates.size() > 0) {
+            query.where(cb.and(predicates.toArray(new Predicate[] {})));
+        }
+        query.orderBy(cb.asc(root.get("title")));
+        return em.createQuery(query).getResultList();
+    }
+
+    //ページ単位の検索。afterがあれば（ソート列, id）のキーセットで続きを読み、
+    //なければfirstまで読み飛ばす（任意のページへのジャンプ用）。
+    //一覧に表示する列だけをコンストラクタ式で読み込み、エンティティは作らない
+    @Override
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public List<MovieRow> searchMovieRows(MovieSearchCondition condition, MovieSeekKey after, int first,
+            int pageSize) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<MovieRow> query = cb.createQuery(MovieRow.class);
+        Root<Movie> root = query.from(Movie.class);
+        query.select(cb.construct(MovieRow.class, root.get("id"), root.get("title"), root.get("category"),
+                root.get("outline"), root.get("isLent"), root.get("image"), root.get("imageHash")));
+
+        Expression<Comparable> sortPath = root.get(sortFieldOf(condition));
+        Expression<Long> idPath = root.get("id");
+        //ソート列がnullの行は、昇順では先頭・降順では末尾に並べる（DBによって既定の位置が異なるため明示する）
+        Expression<Integer> nullRank = cb.<Integer> selectCase().when(cb.isNull(sortPath), 0).otherwise(1);
+
+        List<Predicate> predicates = createPredicates(cb, root, condition);
+        if (after != null) {
+            predicates.add(seekPredicate(cb, sortPath, idPath, after, condition.isAscending()));
+        }
+        if (predicates.size() > 0) {
+            query.where(cb.and(predicates.toArray(new Predicate[] {})));
+        }
+        if (condition.isAscending()) {
+            query.orderBy(cb.asc(nullRank), cb.asc(sortPath), cb.asc(idPath));
+        } else {
+            query.orderBy(cb.desc(nullRank), cb.desc(sortPath), cb.desc(idPath));
+        }
+
+        TypedQuery<MovieRow> q = em.createQuery(query);
+        if (after == null && first > 0) {
+            q.setFirstResult(first);
+        }
+        q.setMaxResults(pageSize);
+        return q.getResultList();
+    }
+
+    //前ページ最終行（after）より後ろの行。nullとの比較は常に偽になるため、nullの行は別に条件を付ける
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Predicate seekPredicate(CriteriaBuilder cb, Expression<Comparable> sortPath, Expression<Long> idPath,
+            MovieSeekKey after, boolean ascending) {
+        Comparable value = (Comparable) after.getSortValue();
+        if (ascending) {
+            if (value == null) {
+                //nullの行の続き、その後にnull以外のすべての行
+                return cb.or(cb.and(cb.isNull(sortPath), cb.greaterThan(idPath, after.getId())),
+                        cb.isNotNull(sortPath));
+            }
+            return cb.or(cb.greaterThan(sortPath, value),
+                    cb.and(cb.equal(sortPath, value), cb.greaterThan(idPath, after.getId())));
+        }
+        if (value == null) {
+            //nullの行は末尾なので、その続きだけ
+            return cb.and(cb.isNull(sortPath), cb.lessThan(idPath, after.getId()));
+        }
+        return cb.or(cb.lessThan(sortPath, value),
+                cb.and(cb.equal(sortPath, value), cb.lessThan(idPath, after.getId())), cb.isNull(sortPath));
+    }
+
+    @Override
+    public long countMovie(MovieSearchCondition condition) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Movie> root = query.from(Movie.class);
+        query.select(cb.count(root));
+
+        List<Predicate> predicates = createPredicates(cb, root, condition);
+        if (predicates.size() > 0) {
+            query.where(cb.and(predicates.toArray(new Predicate[] {})));
+        }
+        return em.createQuery(query).getSingleResult();
+    }
+
+    private List<Predicate> createPredicates(CriteriaBuilder cb, Root<Movie> root, MovieSearchCondition condition) {
         List<Predicate> predicates = new ArrayList<Predicate>();
-        if (title != null && !title.isEmpty()) {
+        String title = condition.getTitle();
+        String category = condition.getCategory();
+        String outline = condition.getOutline();
+
+        //タイトル・あらすじの部分一致は、可能であればインデックスでIDに解決する
+        LongHashSet candidates = findTextCandidates(condition);
+        boolean useIndex = candidates != null && candidates.size() <= MAX_INDEX_CANDIDATES;
+        if (useIndex) {
+            if (candidates.isEmpty()) {
+                predicates.add(cb.disjunction());
+            } else {
+                List<Long> ids = new ArrayList<>(candidates.size());
+                candidates.forEach(ids::add);
+                predicates.add(root.get("id").in(ids));
+            }
+        }
+
+        if (!useIndex && title != null && !title.isEmpty()) {
             predicates.add(cb.like(root.get("title"), "%" + title + "%"));
         }
         if (category != null && !category.isEmpty()) {
             predicates.add(cb.equal(root.get("category"), category));
         }
-        if (outline != null && !outline.isEmpty()) {
+        if (!useIndex && outline != null && !outline.isEmpty()) {
             predicates.add(cb.like(root.get("outline"), "%" + outline + "%"));
         }
-        if (isLent != null) {
-            predicates.add(cb.equal(root.get("isLent"), isLent));
+        if (condition.getIsLent() != null) {
+            predicates.add(cb.equal(root.get("isLent"), condition.getIsLent()));
+        }
+        //一覧の列フィルタ（部分一致）
+        for (Map.Entry<String, String> filter : condition.getFilters().entrySet()) {
+            String field = filter.getKey();
+            if (useIndex && INDEXED_FIELDS.contains(field)) {
+                continue;
+            }
+            if (FILTER_FIELDS.contains(field) && filter.getValue() != null && !filter.getValue().isEmpty()) {
+                predicates.add(cb.like(root.get(field), "%" + filter.getValue() + "%"));
+            }
         }
+        if (!condition.getExcludedIds().isEmpty()) {
+            predicates.add(cb.not(root.get("id").in(condition.getExcludedIds())));
+        }
+        return predicates;
+    }
 
-        if (predicates.size() > 0) {
-            query.where(cb.and(predicates.toArray(new Predicate[] {})));
+    //インデックスが使えない、またはタイトル・あらすじの条件がない場合はnull
+    private LongHashSet findTextCandidates(MovieSearchCondition condition) {
+        if (textIndex == null || !textIndex.isReady()) {
+            return null;
+        }
+        List<LongHashSet> matches = new ArrayList<>();
+        addIfPresent(matches, condition.getTitle(), textIndex::findByTitle);
+        addIfPresent(matches, condition.getFilters().get("title"), textIndex::findByTitle);
+        addIfPresent(matches, condition.getOutline(), textIndex::findByOutline);
+        addIfPresent(matches, condition.getFilters().get("outline"), textIndex::findByOutline);
+        if (matches.isEmpty()) {
+            return null;
+        }
+        LongHashSet result = matches.get(0);
+        for (int i = 1; i < matches.size(); i++) {
+            result.retainAll(matches.get(i));
+        }
+        return result;
+    }
+
+    private static void addIfPresent(List<LongHashSet> matches, String term, Function<String, LongHashSet> search) {
+        if (term != null && !term.isEmpty()) {
+            matches.add(search.apply(term));
+        }
+    }
+
+    private static String sortFieldOf(MovieSearchCondition condition) {
+        String sortField = condition.getSortField();
+        return SORT_FIELDS.contains(sortField) ? sortField : "title";
+    }
+
+    //画像データは一覧の検索では読まず、表示する時だけ取得する。
+    //画像ストアにあればそこから、なければ（移行前の画像）MOVIE_IMAGEから読む
+    @Override
+    public byte[] findImageData(long movieId) {
+        final byte[] stored = readStoredImage(movieId, null);
+        if (stored != null) {
+            return stored;
+        }
+        return findImageColumn(movieId, "imageData");
+    }
+
+    //表示サイズに合う縮小版を返す。縮小版がない場合は元画像
+    @Override
+    public byte[] findImageData(long movieId, int size) {
+        final ThumbnailSize thumbnailSize = ThumbnailSize.fitting(size);
+        if (thumbnailSize != null) {
+            final byte[] stored = readStoredImage(movieId, thumbnailSize);
+            if (stored != null) {
+                return stored;
+            }
+            final byte[] thumbnail = findImageColumn(movieId, thumbnailSize.getAttributeName());
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+        }
+        return findImageData(movieId);
+    }
+
+    private byte[] readStoredImage(long movieId, ThumbnailSize size) {
+        if (imageStore == null) {
+            return null;
+        }
+        final Movie movie = findById(movieId);
+        if (movie == null || movie.getImageHash() == null) {
+            return null;
+        }
+        try {
+            return imageStore.read(movie.getImageHash(), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] findImageColumn(long movieId, String attributeName) {
+        final TypedQuery<byte[]> q = em.createQuery(
+                "select i." + attributeName + " from MovieImage i where i.movieId = :movieId", byte[].class);
+        q.setParameter("movieId", movieId);
+        final List<byte[]> result = q.getResultList();
+        if (result.size() > 0) {
+            return result.get(0);
+        }
+        return null;
+    }
+
+    @Override
+    public MovieImage saveImageData(long movieId, byte[] imageData) {
+        return saveImageData(movieId, imageData, Collections.emptyMap());
+    }
+
+    //元画像を差し替えた場合、渡されなかった縮小版は消す（バックフィルで作り直す）。
+    //映画には画像のハッシュを記録し、画像のURLを変える。
+    //画像ストアがある場合はストアに書き、MOVIE_IMAGEの行は削除する（戻り値はnull）
+    @Override
+    public MovieImage saveImageData(long movieId, byte[] imageData, Map<ThumbnailSize, byte[]> thumbnails) {
+        if (imageStore != null && imageData != null) {
+            final String hash = storeImage(imageData, thumbnails);
+            final MovieImage old = em.find(MovieImage.class, movieId);
+            if (old != null) {
+                em.remove(old);
+            }
+            updateImageHash(movieId, hash);
+            return null;
+        }
+
+        MovieImage image = em.find(MovieImage.class, movieId);
+        if (image == null) {
+            image = new MovieImage(movieId, imageData);
+            em.persist(image);
+        } else {
+            image.setImageData(imageData);
+        }
+        for (ThumbnailSize size : ThumbnailSize.values()) {
+            setThumbnail(image, size, thumbnails.get(size));
+        }
+        updateImageHash(movieId, imageData == null ? null : ContentHash.sha256Hex(imageData));
+        return image;
+    }
+
+    //ストアのファイルは内容で識別するため、トランザクションがロールバックされても既存の画像を壊さない
+    private String storeImage(byte[] imageData, Map<ThumbnailSize, byte[]> thumbnails) {
+        try {
+            final String hash = imageStore.put(imageData);
+            for (Map.Entry<ThumbnailSize, byte[]> entry : thumbnails.entrySet()) {
+                imageStore.putVariant(hash, entry.getKey(), entry.getValue());
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void updateImageHash(long movieId, String hash) {
+        final Movie movie = em.find(Movie.class, movieId);
+        if (movie != null) {
+            movie.setImageHash(hash);
+            movie.setImageStatus(hash == null ? null : ImageStatus.READY);
+            invalidateMovie(movieId);
+        }
+    }
+
+    @Override
+    public boolean saveThumbnails(long movieId, Map<ThumbnailSize, byte[]> thumbnails) {
+        final MovieImage image = em.find(MovieImage.class, movieId);
+        if (image == null) {
+            return false;
+        }
+        for (Map.Entry<ThumbnailSize, byte[]> entry : thumbnails.entrySet()) {
+            setThumbnail(image, entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    //縮小版（中サイズ）のない画像のID。afterIdより大きいものをID順に
+    @Override
+    public List<Long> findImageIdsWithoutThumbnails(long afterId, int limit) {
+        final TypedQuery<Long> q = em.createQuery("select i.movieId from MovieImage i"
+                + " where i.movieId > :afterId and i.imageData is not null and i.thumbnail200 is null"
+                + " order by i.movieId asc", Long.class);
+        q.setParameter("afterId", afterId);
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
+    //画像ストアに保存済みの画像を映画に設定する（アップロードの非同期処理から）。
+    //映画が削除されていた場合はfalse
+    @Override
+    public boolean completeImage(long movieId, String imageHash) {
+        final Movie movie = em.find(Movie.class, movieId);
+        if (movie == null) {
+            return false;
+        }
+        final MovieImage old = em.find(MovieImage.class, movieId);
+        if (old != null) {
+            em.remove(old);
+        }
+        movie.setImageHash(imageHash);
+        movie.setImageStatus(ImageStatus.READY);
+        invalidateMovie(movieId);
+        return true;
+    }
+
+    @Override
+    public boolean updateImageStatus(long movieId, ImageStatus status) {
+        final Movie movie = em.find(Movie.class, movieId);
+        if (movie == null) {
+            return false;
+        }
+        movie.setImageStatus(status);
+        invalidateMovie(movieId);
+        return true;
+    }
+
+    private static void setThumbnail(MovieImage image, ThumbnailSize size, byte[] data) {
+        switch (size) {
+        case SMALL:
+            image.setThumbnail64(data);
+            break;
+        case MEDIUM:
+            image.setThumbnail200(data);
+            break;
+        case LARGE:
+            image.setThumbnail400(data);
+            break;
+        default:
+            throw new IllegalArgumentException(size.name());
         }
-        query.orderBy(cb.asc(root.get("title")));
-        return em.createQuery(query).getResultList();
     }
 
 }
@@ -0,0 +1,67 @@
+package sample.logic;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+//映画検索の条件。ページングの間、同じ条件かどうかの判定に使うため equals を持ちます。
+@EqualsAndHashCode
+public class MovieSearchCondition implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    @Setter
+    private String title; //タイトル（部分一致）
+
+    @Getter
+    @Setter
+    private String category; //カテゴリ（完全一致）
+
+    @Getter
+    @Setter
+    private String outline; //あらすじ（部分一致）
+
+    @Getter
+    @Setter
+    private Boolean isLent; //null→貸出中も含める
+
+    //一覧の列フィルタ（列名→部分一致の値）
+    @Getter
+    @Setter
+    private Map<String, String> filters = new HashMap<>();
+
+    //ソート列。キーセットページングは（ソート列, id）で行います
+    @Getter
+    @Setter
+    private String sortField = "title";
+
+    @Getter
+    @Setter
+    private boolean ascending = true;
+
+    //検索結果から除外する映画（カートに入れた映画など）
+    @Getter
+    @Setter
+    private Set<Long> excludedIds = new HashSet<>();
+
+    public MovieSearchCondition copy() {
+        MovieSearchCondition copy = new MovieSearchCondition();
+        copy.title = title;
+        copy.category = category;
+        copy.outline = outline;
+        copy.isLent = isLent;
+        copy.filters = new HashMap<>(filters);
+        copy.sortField = sortField;
+        copy.ascending = ascending;
+        copy.excludedIds = new HashSet<>(excludedIds);
+        return copy;
+    }
+
+}
@@ -0,0 +1,49 @@
+package sample.logic;
+
+import java.io.Serializable;
+
+import sample.logic.dto.MovieRow;
+
+//キーセットページングの位置。前ページ最終行の（ソート列の値, id）を保持します。
+public class MovieSeekKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Serializable sortValue;
+
+    private final long id;
+
+    public MovieSeekKey(Serializable sortValue, long id) {
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    //映画の行から、ソート列に対応する位置を作成する
+    public static MovieSeekKey of(MovieRow movie, String sortField) {
+        final Serializable value;
+        switch (sortField) {
+        case "category":
+            value = movie.getCategory();
+            break;
+        case "outline":
+            value = movie.getOutline();
+            break;
+        case "isLent":
+            value = movie.getIsLent();
+            break;
+        default:
+            value = movie.getTitle();
+            break;
+        }
+        return new MovieSeekKey(value, movie.getId());
+    }
+
+    public Serializable getSortValue() {
+        return sortValue;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+}
@@ -0,0 +1,102 @@
+package sample.logic;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Setter;
+import sample.logic.index.SuggestionIndex;
+
+//検索欄（タイトル・カテゴリ・あらすじ）の入力補完。アプリケーションで1つだけ持ち、
+//起動時にMOVIEから構築して、以降はMovieChangedEventでコミット後に差分を反映します。
+@ApplicationScoped
+public class MovieSuggestionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieSuggestionIndex.class);
+
+    //起動時に一度に読み込む件数
+    private static final int LOAD_CHUNK_SIZE = 10000;
+
+    @PersistenceContext(unitName = "yourlibrary")
+    @Setter
+    private EntityManager em;
+
+    private final SuggestionIndex titles = new SuggestionIndex();
+
+    private final SuggestionIndex categories = new SuggestionIndex();
+
+    private final SuggestionIndex outlines = new SuggestionIndex();
+
+    //映画ID→索引済みの値（タイトル, カテゴリ, あらすじ）。更新時に古い値を減らすために持つ
+    private final Map<Long, String[]> indexedValues = new HashMap<>();
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        long start = System.currentTimeMillis();
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            TypedQuery<Object[]> q = em.createQuery(
+                    "select m.id, m.title, m.category, m.outline from Movie m where m.id > :lastId order by m.id asc",
+                    Object[].class);
+            q.setParameter("lastId", lastId);
+            q.setMaxResults(LOAD_CHUNK_SIZE);
+            List<Object[]> rows = q.getResultList();
+            for (Object[] row : rows) {
+                lastId = (Long) row[0];
+                update(lastId, new String[] { (String) row[1], (String) row[2], (String) row[3] });
+            }
+            em.clear();
+            if (rows.size() < LOAD_CHUNK_SIZE) {
+                break;
+            }
+        }
+        logger.info("MovieSuggestionIndex built: {} titles, {} categories in {}ms", titles.size(), categories.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    //コミットされた変更だけを反映する
+    public void onMovieChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) MovieChangedEvent event) {
+        if (event.isRemoved()) {
+            update(event.getId(), null);
+        } else {
+            update(event.getId(), new String[] { event.getTitle(), event.getCategory(), event.getOutline() });
+        }
+    }
+
+    private synchronized void update(long movieId, String[] values) {
+        String[] old = values == null ? indexedValues.remove(movieId) : indexedValues.put(movieId, values);
+        if (old != null) {
+            titles.remove(old[0]);
+            categories.remove(old[1]);
+            outlines.remove(old[2]);
+        }
+        if (values != null) {
+            titles.add(values[0]);
+            categories.add(values[1]);
+            outlines.add(values[2]);
+        }
+    }
+
+    public List<String> completeTitle(String input, int limit) {
+        return titles.complete(input, limit);
+    }
+
+    public List<String> completeCategory(String input, int limit) {
+        return categories.complete(input, limit);
+    }
+
+    public List<String> completeOutline(String input, int limit) {
+        return outlines.complete(input, limit);
+    }
+
+}
@@ -0,0 +1,91 @@
+package sample.logic;
+
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Setter;
+import sample.logic.index.NGramIndex;
+import sample.util.collection.LongHashSet;
+
+//映画のタイトル・あらすじの部分一致検索用インデックス。
+//起動時にMOVIEから構築し、以降はMovieChangedEventでコミット後に差分を反映します。
+@ApplicationScoped
+public class MovieTextIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieTextIndex.class);
+
+    //起動時に一度に読み込む件数
+    private static final int LOAD_CHUNK_SIZE = 10000;
+
+    @PersistenceContext(unitName = "yourlibrary")
+    @Setter
+    private EntityManager em;
+
+    private final NGramIndex titleIndex = new NGramIndex();
+
+    private final NGramIndex outlineIndex = new NGramIndex();
+
+    //構築が終わるまではfalse。その間の検索はDBのLIKEで行う
+    private volatile boolean ready;
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        long start = System.currentTimeMillis();
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            TypedQuery<Object[]> q = em.createQuery(
+                    "select m.id, m.title, m.outline from Movie m where m.id > :lastId order by m.id asc",
+                    Object[].class);
+            q.setParameter("lastId", lastId);
+            q.setMaxResults(LOAD_CHUNK_SIZE);
+            List<Object[]> rows = q.getResultList();
+            for (Object[] row : rows) {
+                long id = (Long) row[0];
+                titleIndex.put(id, (String) row[1]);
+                outlineIndex.put(id, (String) row[2]);
+                lastId = id;
+            }
+            em.clear();
+            if (rows.size() < LOAD_CHUNK_SIZE) {
+                break;
+            }
+        }
+        ready = true;
+        logger.info("MovieTextIndex built: {} movies in {}ms", titleIndex.size(), System.currentTimeMillis() - start);
+    }
+
+    //コミットされた変更だけを反映する
+    public void onMovieChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) MovieChangedEvent event) {
+        if (event.isRemoved()) {
+            titleIndex.remove(event.getId());
+            outlineIndex.remove(event.getId());
+        } else {
+            titleIndex.put(event.getId(), event.getTitle());
+            outlineIndex.put(event.getId(), event.getOutline());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    //タイトルにtermを含む映画のID
+    public LongHashSet findByTitle(String term) {
+        return titleIndex.search(term);
+    }
+
+    //あらすじにtermを含む映画のID
+    public LongHashSet findByOutline(String term) {
+        return outlineIndex.search(term);
+    }
+
+}
@@ -1,19 +1,30 @@
 package sample.logic;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import sample.entity.User;
+import sample.logic.dto.UserRow;
 
 public interface UserManager {
 
 	public User findById(long id);
 
+	public Map<Long, User> findByIds(Collection<Long> ids);
+
 	public User createUser(String account, String name);
 
 	public List<User> findAll();
 
+	public List<UserRow> findAllRows();
+
 	public User updateUser(User find1);
 
+	public boolean updateUser(UserRow row);
+
+	public boolean updatePassword(long id, String password);
+
 	public User findByAccount(String string);
 
 	public User login(String string, String string2);
@@ -22,4 +33,6 @@ public interface UserManager {
 
 	public int removeUser(List<User> users);
 
+	public int removeUsersById(Collection<Long> userIds);
+
 }
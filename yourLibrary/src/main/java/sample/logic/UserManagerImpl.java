@@ -1,39 +1,91 @@
 package sample.logic;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.persistence.EntityManager;
 //import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import lombok.Getter;
 import lombok.Setter;
-import sample.entity.LendHistory;
 import sample.entity.User;
+import sample.logic.cache.CoalescingLoader;
+import sample.logic.cache.EntityCache;
+import sample.logic.dto.UserRow;
 import sample.util.Service;
+import sample.util.collection.Lists;
 
 @Service
 @ApplicationScoped
 public class UserManagerImpl implements UserManager {
 
+	//一括削除でIN句に渡すIDの最大件数
+	private static final int BULK_CHUNK_SIZE = 1000;
+
+	//findByIdsでIN句に渡すIDの件数
+	private static final int FIND_CHUNK_SIZE = Integer.getInteger("yourlibrary.findByIds.chunkSize", 500);
+
+	//findByIdsで同時の要求をまとめる待ち時間（マイクロ秒）
+	private static final long COALESCE_WINDOW_MICROS = Long.getLong("yourlibrary.findByIds.windowMicros", 500);
+
 	// JPAのコンテナ管理永続性コンテキスト
 	@PersistenceContext(unitName = "yourlibrary")
 	@Getter
 	@Setter
 	private EntityManager em;
 
+	@Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+	private TransactionSynchronizationRegistry txRegistry;
+
+	//IDとアカウントで引く『ユーザ』のキャッシュ（貸出履歴は含まない）
+	private final EntityCache<User> userCache = new EntityCache<>("User",
+			Integer.getInteger("yourlibrary.cache.user.maxSize", 10000),
+			Integer.getInteger("yourlibrary.cache.user.ttlSeconds", 300), TimeUnit.SECONDS,
+			UserManagerImpl::copyOf, User::getAccount);
+
+	//findByIdsで、キャッシュにないユーザを他のスレッドの要求とまとめて読み込む
+	private final CoalescingLoader<User> userLoader = new CoalescingLoader<>(COALESCE_WINDOW_MICROS,
+			TimeUnit.MICROSECONDS, this::loadByIds, UserManagerImpl::copyOf);
+
 	@PostConstruct
 	public void postConstruct() {
 		System.out.println("[Application Scope] post construct : " + hashCode());
+		userCache.register();
 	}
 
 	@PreDestroy
 	public void preDestroy() {
 		System.out.println("[Application Scope] pre construct : " + hashCode());
+		userCache.unregister();
+	}
+
+	//キャッシュに保持する値のコピー。関連（貸出履歴）は含まない
+	private static User copyOf(User user) {
+		final User copy = new User();
+		copy.setId(user.getId());
+		copy.setAccount(user.getAccount());
+		copy.setPassword(user.getPassword());
+		copy.setName(user.getName());
+		copy.setEmail(user.getEmail());
+		copy.setIsAdmin(user.getIsAdmin());
+		copy.setTheme(user.getTheme());
+		return copy;
+	}
+
+	private void invalidateUser(long id) {
+		userCache.invalidate(id, txRegistry);
 	}
 
 	//１．アプリケーションで管理するEntityManger
@@ -47,15 +99,42 @@ public class UserManagerImpl implements UserManager {
 		user.setAccount(account);
 		user.setName(name);
 		em.persist(user);//newしたオブジェクトの永続化
+		userCache.markWritten(txRegistry);
 		return user;
 	}
 
-	//３．findの使用
+	//３．findの使用。キャッシュにあればコピーを返す（貸出履歴は含まない）
 	@Override
 	public User findById(long id) {
-		final User user = em.find(User.class, id);
-		em.clear();
-		return user;
+		return userCache.get(id, txRegistry, key -> {
+			final User user = em.find(User.class, key);
+			em.clear();
+			return user;
+		});
+	}
+
+	//IDでまとめて取得する（キャッシュと同じく貸出履歴は含まない）。見つからないIDは含まない。
+	//このトランザクションでユーザを更新していなければ、同時に来た他の要求とまとめて読み込む。
+	//更新していれば、コミット前の値を他のトランザクションと共有しないよう、自分で読み込みキャッシュにも入れない
+	@Override
+	public Map<Long, User> findByIds(Collection<Long> ids) {
+		if (ids.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		return userCache.getAll(ids, txRegistry,
+				userCache.isWritten(txRegistry) ? this::loadByIds : userLoader::load);
+	}
+
+	private Map<Long, User> loadByIds(Collection<Long> ids) {
+		final Map<Long, User> result = new HashMap<>();
+		for (List<Long> chunk : Lists.partition(new ArrayList<>(ids), FIND_CHUNK_SIZE)) {
+			final TypedQuery<User> q = em.createQuery("select u from User u where u.id in :ids", User.class);
+			q.setParameter("ids", chunk);
+			for (User user : q.getResultList()) {
+				result.put(user.getId(), user);
+			}
+		}
+		return result;
 	}
 
 	//４．もっとも簡単なJPQL
@@ -68,16 +147,24 @@ public class UserManagerImpl implements UserManager {
 		return result;
 	}
 
+	//ユーザ一覧用。表示する列だけをコンストラクタ式で読み込む（パスワード・貸出履歴は読まない）
+	@Override
+	public List<UserRow> findAllRows() {
+		return em.createNamedQuery("findUserRowAll", UserRow.class).getResultList();
+	}
+
 	//５．JPQLの名前付きパラメータの使用
 	@Override
 	public User findByAccount(String account) {
-		final TypedQuery<User> q = em.createQuery("select u from User u where u.account=:account", User.class);
-		q.setParameter("account", account);//名前付きパラメータ
-		final List<User> result = q.getResultList();
-		if (result.size() > 0) {
-			return result.get(0);
-		}
-		return null;
+		return userCache.getByNaturalKey(account, txRegistry, key -> {
+			final TypedQuery<User> q = em.createQuery("select u from User u where u.account=:account", User.class);
+			q.setParameter("account", key);//名前付きパラメータ
+			final List<User> result = q.getResultList();
+			if (result.size() > 0) {
+				return result.get(0);
+			}
+			return null;
+		});
 	}
 
 	//６．JPQLを使ったログイン処理
@@ -112,41 +199,73 @@ public class UserManagerImpl implements UserManager {
 		if (!em.contains(user)) {
 			user = em.merge(user);//マージ
 		}
+		invalidateUser(user.getId());
 		return user;
 	}
 
-	//８．エンティティの削除
+	//一覧で編集した列だけを反映する
 	@Override
-	public boolean removeUser(User user) {
-		final User find = em.find(User.class, user.getId());
+	public boolean updateUser(UserRow row) {
+		final User find = em.find(User.class, row.getId());
 		if (find == null) {
 			return false;
 		}
-		final List<LendHistory> histories = find.getLendHistories();
-		for (final LendHistory history : histories) {
-			history.setLendUser(null);//履歴からは、ユーザをnullにしてから削除する。
-			em.merge(history);//履歴の更新
+		find.setAccount(row.getAccount());
+		find.setName(row.getName());
+		find.setEmail(row.getEmail());
+		find.setIsAdmin(row.getIsAdmin());
+		invalidateUser(find.getId());
+		return true;
+	}
+
+	//パスワードの変更。変更前と同じ場合は何もせずfalseを返す
+	@Override
+	public boolean updatePassword(long id, String password) {
+		final User find = em.find(User.class, id);
+		if (find == null || (password != null && password.equals(find.getPassword()))) {
+			return false;
 		}
-		em.remove(find);//削除
+		find.setPassword(password);
+		invalidateUser(id);
 		return true;
 	}
 
+	//８．エンティティの削除
+	@Override
+	public boolean removeUser(User user) {
+		return removeUsersById(Collections.singletonList(user.getId())) > 0;
+	}
+
 	@Override
 	public int removeUser(List<User> users) {
+		final List<Long> userIds = new ArrayList<>(users.size());
+		for (User user : users) {
+			userIds.add(user.getId());
+		}
+		return removeUsersById(userIds);
+	}
 
+	//履歴は残して、ユーザをまとめて削除する。履歴・ユーザを読み込まず、
+	//履歴からユーザを外すUPDATEとユーザのDELETEをIN句でまとめて発行する
+	@Override
+	public int removeUsersById(Collection<Long> userIds) {
+		if (userIds.isEmpty()) {
+			return 0;
+		}
+		em.flush();
 		int removeCount = 0;
-		for (User user : users) {
-			User find = em.find(User.class, user.getId());
-			if (find == null) {
-				continue;
-			}
-			List<LendHistory> histories = find.getLendHistories();
-			for (LendHistory history : histories) {
-				history.setLendUser(null);//履歴からは、ユーザをnullにしてから削除する。
-				em.merge(history);//履歴の更新
-			}
-			em.remove(find);
-			removeCount++;
+		for (List<Long> ids : Lists.partition(new ArrayList<>(userIds), BULK_CHUNK_SIZE)) {
+			em.createQuery("update LendHistory h set h.lendUser = null where h.lendUser.id in :ids")
+					.setParameter("ids", ids)
+					.executeUpdate();//履歴からは、ユーザをnullにしてから削除する。
+			removeCount += em.createQuery("delete from User u where u.id in :ids")
+					.setParameter("ids", ids)
+					.executeUpdate();
+		}
+		//一括更新は永続性コンテキストに反映されないため、読み込み済みのエンティティを破棄する
+		em.clear();
+		for (Long id : userIds) {
+			invalidateUser(id);
 		}
 		return removeCount;
 	}
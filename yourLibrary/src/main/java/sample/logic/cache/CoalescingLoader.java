@@ -0,0 +1,136 @@
+package sample.logic.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+//同時に来たIDによる読み込みを、短い時間（window）だけ待ってまとめて1回で読み込みます（DataLoader方式）。
+//最初に要求したスレッドがwindowの間に集まったIDをまとめて読み込み、他のスレッドはその結果を待ちます。
+//他に読み込み中の要求がない場合は待たずにすぐ読み込みます（単独の要求を遅くしない）。
+//読み込み中のIDを要求した場合も、その読み込みの結果を使います。
+//結果は複数のスレッドで共有するため、呼び出し側にはコピーを返します。
+public class CoalescingLoader<T> {
+
+    private final long windowNanos;
+
+    private final Function<Collection<Long>, Map<Long, T>> loader;
+
+    private final UnaryOperator<T> copier;
+
+    //IDを受け付けている読み込み
+    private Map<Long, CompletableFuture<T>> open;
+
+    //受け付け中・読み込み中のID
+    private final Map<Long, CompletableFuture<T>> pending = new HashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public CoalescingLoader(long window, TimeUnit unit, Function<Collection<Long>, Map<Long, T>> loader,
+            UnaryOperator<T> copier) {
+        this.windowNanos = unit.toNanos(window);
+        this.loader = loader;
+        this.copier = copier;
+    }
+
+    //戻り値はidsの順（見つからないものは除く）
+    public Map<Long, T> load(Collection<Long> ids) {
+        requests.increment();
+        Map<Long, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        Map<Long, CompletableFuture<T>> lead = null;
+        boolean busy = false;
+        synchronized (this) {
+            for (Long id : ids) {
+                CompletableFuture<T> future = pending.get(id);
+                if (future == null) {
+                    if (open == null) {
+                        open = new HashMap<>();
+                        lead = open;
+                        busy = !pending.isEmpty();
+                    }
+                    future = new CompletableFuture<>();
+                    open.put(id, future);
+                    pending.put(id, future);
+                }
+                futures.put(id, future);
+            }
+        }
+        if (lead != null) {
+            run(lead, busy);
+        }
+
+        Map<Long, T> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, CompletableFuture<T>> entry : futures.entrySet()) {
+            T value;
+            try {
+                value = entry.getValue().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+            if (value != null) {
+                result.put(entry.getKey(), copier.apply(value));
+            }
+        }
+        return result;
+    }
+
+    //windowの間に集まったIDをまとめて読み込む。busyでなければ（他に読み込み中の要求がなければ）待たない
+    private void run(Map<Long, CompletableFuture<T>> batch, boolean busy) {
+        if (busy && windowNanos > 0) {
+            LockSupport.parkNanos(windowNanos);
+        }
+        synchronized (this) {
+            if (open == batch) {
+                open = null;
+            }
+        }
+        batches.increment();
+        Map<Long, T> loaded = null;
+        Throwable failure = null;
+        try {
+            loaded = loader.apply(new ArrayList<>(batch.keySet()));
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            //Errorでも必ず外して完了させる（残すと、以後そのIDを要求したスレッドが待ち続ける）
+            synchronized (this) {
+                for (Map.Entry<Long, CompletableFuture<T>> entry : batch.entrySet()) {
+                    pending.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<Long, CompletableFuture<T>> entry : batch.entrySet()) {
+                if (failure != null) {
+                    entry.getValue().completeExceptionally(failure);
+                } else {
+                    entry.getValue().complete(loaded.get(entry.getKey()));
+                }
+            }
+        }
+    }
+
+    //要求の回数
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    //実際に読み込んだ回数
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+}
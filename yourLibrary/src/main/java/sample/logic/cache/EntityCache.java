@@ -0,0 +1,366 @@
+package sample.logic.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.entity.IdEntity;
+
+//エンティティの読み込みキャッシュ。IDと自然キー（タイトル、アカウント等）で引けます。
+//件数の上限（最も使われていないものから追い出し）と有効期限を持ち、更新時は明示的に破棄します。
+//キャッシュにはコピー（関連・画像を含まない値のみ）を保持し、取得のたびにコピーを返します。
+//キャッシュになく読み込んだ場合もコピーを返すので、呼び出し側が受け取る形はキャッシュの状態によらず同じです。
+public class EntityCache<T extends IdEntity> implements EntityCacheMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCache.class);
+
+    private final String name;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final UnaryOperator<T> copier;
+
+    private final Function<T, String> naturalKey;
+
+    private final LongSupplier clock;
+
+    //アクセス順のLinkedHashMap。上限を超えたら最も古いものを追い出す
+    private final LinkedHashMap<Long, Entry<T>> entries;
+
+    //自然キー→ID
+    private final Map<String, Long> ids = new HashMap<>();
+
+    //破棄の回数。読み込み中に破棄された値はキャッシュに入れない
+    private long invalidationCount;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private ObjectName objectName;
+
+    private static class Entry<T> {
+        final T value;
+        final String naturalKey;
+        final long expiresAt;
+
+        Entry(T value, String naturalKey, long expiresAt) {
+            this.value = value;
+            this.naturalKey = naturalKey;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public EntityCache(String name, int maxSize, long ttl, TimeUnit unit, UnaryOperator<T> copier,
+            Function<T, String> naturalKey) {
+        this(name, maxSize, ttl, unit, copier, naturalKey, System::nanoTime);
+    }
+
+    EntityCache(String name, int maxSize, long ttl, TimeUnit unit, UnaryOperator<T> copier,
+            Function<T, String> naturalKey, LongSupplier clock) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.copier = copier;
+        this.naturalKey = naturalKey;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Long, Entry<T>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<T>> eldest) {
+                if (size() <= EntityCache.this.maxSize) {
+                    return false;
+                }
+                removeNaturalKey(eldest.getKey(), eldest.getValue());
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    //IDで取得。なければloaderで読み込んでキャッシュする
+    public T get(long id, LongFunction<T> loader) {
+        return get(id, null, loader);
+    }
+
+    //現在のトランザクションで更新していれば、読み込んだ値（コミット前の値を含む）はキャッシュしない
+    public T get(long id, TransactionSynchronizationRegistry registry, LongFunction<T> loader) {
+        boolean shared = !isWritten(registry);
+        long count;
+        synchronized (this) {
+            T cached = lookup(id);
+            if (cached != null) {
+                hits.increment();
+                return copier.apply(cached);
+            }
+            count = invalidationCount;
+        }
+        misses.increment();
+        T loaded = loader.apply(id);
+        if (shared) {
+            put(loaded, count);
+        }
+        return copyOf(loaded);
+    }
+
+    //自然キーで取得。なければloaderで読み込んでキャッシュする
+    public T getByNaturalKey(String key, Function<String, T> loader) {
+        return getByNaturalKey(key, null, loader);
+    }
+
+    public T getByNaturalKey(String key, TransactionSynchronizationRegistry registry, Function<String, T> loader) {
+        boolean shared = !isWritten(registry);
+        long count;
+        synchronized (this) {
+            Long id = ids.get(key);
+            T cached = id == null ? null : lookup(id);
+            if (cached != null) {
+                hits.increment();
+                return copier.apply(cached);
+            }
+            count = invalidationCount;
+        }
+        misses.increment();
+        T loaded = loader.apply(key);
+        if (shared) {
+            put(loaded, count);
+        }
+        return copyOf(loaded);
+    }
+
+    //IDでまとめて取得。キャッシュにないものだけをloaderでまとめて読み込む。
+    //戻り値はidsの順（重複・見つからないものは除く）
+    public Map<Long, T> getAll(Collection<Long> ids, Function<Collection<Long>, Map<Long, T>> loader) {
+        return getAll(ids, null, loader);
+    }
+
+    public Map<Long, T> getAll(Collection<Long> ids, TransactionSynchronizationRegistry registry,
+            Function<Collection<Long>, Map<Long, T>> loader) {
+        boolean shared = !isWritten(registry);
+        Map<Long, T> found = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        long count;
+        synchronized (this) {
+            for (Long id : ids) {
+                if (found.containsKey(id) || missing.contains(id)) {
+                    continue;
+                }
+                T cached = lookup(id);
+                if (cached != null) {
+                    found.put(id, copier.apply(cached));
+                } else {
+                    missing.add(id);
+                }
+            }
+            count = invalidationCount;
+        }
+        hits.add(found.size());
+        misses.add(missing.size());
+        if (!missing.isEmpty()) {
+            Map<Long, T> loaded = loader.apply(missing);
+            if (shared) {
+                for (T value : loaded.values()) {
+                    put(value, count);
+                }
+            }
+            for (Map.Entry<Long, T> entry : loaded.entrySet()) {
+                found.put(entry.getKey(), copyOf(entry.getValue()));
+            }
+        }
+        Map<Long, T> result = new LinkedHashMap<>();
+        for (Long id : ids) {
+            T value = found.get(id);
+            if (value != null) {
+                result.put(id, value);
+            }
+        }
+        return result;
+    }
+
+    //読み込んだ値もキャッシュにある値と同じ形（コピー）で返す
+    private T copyOf(T value) {
+        return value == null ? null : copier.apply(value);
+    }
+
+        private T lookup(long id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.expiresAt > 0) {
+            entries.remove(id);
+            removeNaturalKey(id, entry);
+            evictions.increment();
+            return null;
+        }
+        return entry.value;
+    }
+
+    private synchronized void put(T value, long count) {
+        if (value == null || maxSize <= 0 || count != invalidationCount) {
+            return;
+        }
+        String key = naturalKey.apply(value);
+        Entry<T> old = entries.put(value.getId(),
+                new Entry<>(copier.apply(value), key, clock.getAsLong() + ttlNanos));
+        if (old != null) {
+            removeNaturalKey(value.getId(), old);
+        }
+        if (key != null) {
+            ids.put(key, value.getId());
+        }
+    }
+
+    private void removeNaturalKey(long id, Entry<T> entry) {
+        if (entry.naturalKey != null) {
+            ids.remove(entry.naturalKey, id);
+        }
+    }
+
+    public synchronized void invalidate(long id) {
+        invalidationCount++;
+        invalidations.increment();
+        Entry<T> entry = entries.remove(id);
+        if (entry != null) {
+            removeNaturalKey(id, entry);
+        }
+    }
+
+    //すぐに破棄し、トランザクション中であれば完了後にもう一度破棄する。
+    //コミット前に他のスレッドが古い値を読み込んでキャッシュすることがあるため。
+    public void invalidate(long id, TransactionSynchronizationRegistry registry) {
+        invalidate(id);
+        markWritten(registry);
+        if (registry != null && registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            registry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(id);
+                }
+            });
+        }
+    }
+
+    //トランザクション中にこのエンティティを更新したことを記録する
+    public void markWritten(TransactionSynchronizationRegistry registry) {
+        if (registry != null && registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            registry.putResource(this, Boolean.TRUE);
+        }
+    }
+
+    //現在のトランザクションで更新したか。更新していれば、他のトランザクションが読んだ値と共有できない
+    public boolean isWritten(TransactionSynchronizationRegistry registry) {
+        return registry != null && registry.getTransactionStatus() == Status.STATUS_ACTIVE
+                && registry.getResource(this) != null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        invalidationCount++;
+        entries.clear();
+        ids.clear();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getTtlSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(ttlNanos);
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    //JMX（sample:type=EntityCache,name=...）に登録する
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("sample:type=EntityCache,name=" + name);
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            logger.warn("failed to register cache mbean: " + name, e);
+        }
+    }
+
+    public void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("failed to unregister cache mbean: " + name, e);
+        }
+        objectName = null;
+    }
+
+}
@@ -0,0 +1,26 @@
+package sample.logic.cache;
+
+//EntityCacheの統計。JConsole等から参照します。
+public interface EntityCacheMXBean {
+
+    String getName();
+
+    int getSize();
+
+    int getMaxSize();
+
+    long getTtlSeconds();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    long getInvalidationCount();
+
+    double getHitRatio();
+
+    void clear();
+
+}
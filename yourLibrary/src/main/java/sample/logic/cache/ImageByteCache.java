@@ -0,0 +1,181 @@
+package sample.logic.cache;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.logic.image.ThumbnailSize;
+
+//ポスター画像のバイト列のキャッシュ。全セッションで共有し、ヒープの外（ダイレクトバッファ）に保持します。
+//合計バイト数の上限を超えたら、最も使われていないものから追い出します。
+//キーは画像のハッシュと縮小版の大きさで、内容が変わるとキーも変わるため破棄は不要です。
+//ダイレクトバッファの上限（-XX:MaxDirectMemorySize）は、maxBytesより大きくしてください。
+@ApplicationScoped
+public class ImageByteCache implements ImageByteCacheMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageByteCache.class);
+
+    //1件の上限は全体の1/8。大きな画像で他が全て追い出されないようにする
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final long maxBytes;
+
+    //アクセス順のLinkedHashMap
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long residentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ObjectName objectName;
+
+    public ImageByteCache() {
+        this(Long.getLong("yourlibrary.cache.image.maxBytes", 64L * 1024 * 1024));
+    }
+
+    public ImageByteCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static String keyOf(String imageHash, ThumbnailSize size) {
+        return size == null ? imageHash : imageHash + "_" + size.getPixels();
+    }
+
+    //読み取り専用のバッファ（位置は先頭）。なければloaderで読み込んでキャッシュする。loaderがnullを返したらnull
+    public ByteBuffer get(String key, Supplier<byte[]> loader) {
+        synchronized (this) {
+            ByteBuffer cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached.asReadOnlyBuffer();
+            }
+        }
+        misses.increment();
+        byte[] loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+        if (loaded.length > maxBytes / MAX_ENTRY_FRACTION) {
+            return ByteBuffer.wrap(loaded).asReadOnlyBuffer();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(loaded.length);
+        buffer.put(loaded).flip();
+        put(key, buffer);
+        return buffer.asReadOnlyBuffer();
+    }
+
+    //バイト列で取得（JSFのコンポーネント用）。呼び出しごとに短命のコピーを作る
+    public byte[] getBytes(String key, Supplier<byte[]> loader) {
+        ByteBuffer buffer = get(key, loader);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private synchronized void put(String key, ByteBuffer buffer) {
+        ByteBuffer old = entries.put(key, buffer);
+        if (old != null) {
+            residentBytes -= old.capacity();
+        }
+        residentBytes += buffer.capacity();
+        //上限まで古いものから追い出す（ダイレクトバッファはGCで解放される）
+        while (residentBytes > maxBytes && !entries.isEmpty()) {
+            Map.Entry<String, ByteBuffer> eldest = entries.entrySet().iterator().next();
+            entries.remove(eldest.getKey());
+            residentBytes -= eldest.getValue().capacity();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        residentBytes = 0;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    //JMX（sample:type=ImageByteCache）に登録する
+    @PostConstruct
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("sample:type=ImageByteCache");
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            logger.warn("failed to register image cache mbean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregister() {
+        clear();
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("failed to unregister image cache mbean", e);
+        }
+        objectName = null;
+    }
+
+}
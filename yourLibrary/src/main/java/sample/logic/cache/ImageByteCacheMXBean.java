@@ -0,0 +1,22 @@
+package sample.logic.cache;
+
+//ImageByteCacheの統計。JConsole等から参照します。
+public interface ImageByteCacheMXBean {
+
+    int getSize();
+
+    long getResidentBytes();
+
+    long getMaxBytes();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    double getHitRatio();
+
+    void clear();
+
+}
@@ -0,0 +1,67 @@
+package sample.logic.dto;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import sample.entity.Identifiable;
+
+//貸出履歴一覧の1行。映画はタイトル・カテゴリだけを持ちます。
+public class LendHistoryRow implements Identifiable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+
+    private final long movieId;
+
+    private final String movieTitle;
+
+    private final String movieCategory;
+
+    private final Date lendDate;
+
+    private final Date dueDate;
+
+    private final Date returnDate;
+
+    public LendHistoryRow(long id, long movieId, String movieTitle, String movieCategory, Date lendDate,
+            Date dueDate, Date returnDate) {
+        this.id = id;
+        this.movieId = movieId;
+        this.movieTitle = movieTitle;
+        this.movieCategory = movieCategory;
+        this.lendDate = lendDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    public String getMovieTitle() {
+        return movieTitle;
+    }
+
+    public String getMovieCategory() {
+        return movieCategory;
+    }
+
+    public Date getLendDate() {
+        return lendDate;
+    }
+
+    public Date getDueDate() {
+        return dueDate;
+    }
+
+    public Date getReturnDate() {
+        return returnDate;
+    }
+
+}
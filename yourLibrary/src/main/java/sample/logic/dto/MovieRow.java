@@ -0,0 +1,86 @@
+package sample.logic.dto;
+
+import java.io.Serializable;
+
+import sample.entity.Identifiable;
+import sample.entity.Movie;
+
+//映画一覧の1行。JPQLのコンストラクタ式で必要な列だけを読み込む、読み取り専用の値です。
+//（画像データ・貸出履歴を持たず、永続性コンテキストの管理対象になりません）
+public class MovieRow implements Identifiable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+
+    private final String title;
+
+    private final String category;
+
+    private final String outline;
+
+    private final boolean isLent;
+
+    private final String image;
+
+    //画像のURL用。画像がない場合はnull
+    private final String imageHash;
+
+    public MovieRow(long id, String title, String category, String outline, boolean isLent, String image,
+            String imageHash) {
+        this.id = id;
+        this.title = title;
+        this.category = category;
+        this.outline = outline;
+        this.isLent = isLent;
+        this.image = image;
+        this.imageHash = imageHash;
+    }
+
+    //読み込み済みのエンティティから（カート等、読み込み計画で読んだもの）
+    public static MovieRow of(Movie movie) {
+        return new MovieRow(movie.getId(), movie.getTitle(), movie.getCategory(), movie.getOutline(),
+                movie.getIsLent(), movie.getImage(), movie.getImageHash());
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getOutline() {
+        return outline;
+    }
+
+    public boolean getIsLent() {
+        return isLent;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    //ページを読み直すと別のインスタンスになるため、IDで比較する
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MovieRow && ((MovieRow) obj).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+}
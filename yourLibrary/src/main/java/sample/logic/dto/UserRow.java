@@ -0,0 +1,68 @@
+package sample.logic.dto;
+
+import java.io.Serializable;
+
+import sample.entity.Identifiable;
+
+//ユーザ一覧の1行。パスワードは持ちません。
+//一覧で直接編集する列（アカウント・名前・e-mail・管理者権限）だけは変更できます。
+public class UserRow implements Identifiable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+
+    private String account;
+
+    private String name;
+
+    private String email;
+
+    private boolean isAdmin;
+
+    public UserRow(long id, String account, String name, String email, boolean isAdmin) {
+        this.id = id;
+        this.account = account;
+        this.name = name;
+        this.email = email;
+        this.isAdmin = isAdmin;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public boolean getIsAdmin() {
+        return isAdmin;
+    }
+
+    public void setIsAdmin(boolean isAdmin) {
+        this.isAdmin = isAdmin;
+    }
+
+}
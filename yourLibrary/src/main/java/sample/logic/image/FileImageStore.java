@@ -0,0 +1,147 @@
+package sample.logic.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+import javax.enterprise.context.ApplicationScoped;
+
+//ローカルディスクの画像ストア。ハッシュの先頭2桁・次の2桁でディレクトリを分けます。
+//  {root}/ab/cd/abcd…（元画像）、{root}/ab/cd/abcd…_200（縮小版）
+//書き込みは一時ファイルに書いてから移動するため、読み込み中のファイルが途中の状態になることはありません。
+@ApplicationScoped
+public class FileImageStore implements ImageStore {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path root;
+
+    private final Path tmp;
+
+    public FileImageStore() {
+        this(Paths.get(System.getProperty("yourlibrary.image.store.dir",
+                System.getProperty("user.home") + "/yourlibrary/images")));
+    }
+
+    public FileImageStore(Path root) {
+        this.root = root;
+        this.tmp = root.resolve("tmp");
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public String put(InputStream in) throws IOException {
+        Files.createDirectories(tmp);
+        Path temp = Files.createTempFile(tmp, "upload", null);
+        try {
+            //書き込みながらハッシュを計算する
+            MessageDigest digest = ContentHash.newDigest();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int n; (n = in.read(buffer)) > 0;) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            String hash = ContentHash.toHex(digest.digest());
+            moveInto(temp, pathOf(hash, null));
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void putVariant(String hash, ThumbnailSize size, byte[] data) throws IOException {
+        Path target = pathOf(hash, size);
+        Files.createDirectories(tmp);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tmp, "variant", null);
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    //同じ内容が既にあれば、そのまま使う
+    private static void moveInto(Path temp, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            //同時に同じ画像が保存された
+        }
+    }
+
+    @Override
+    public long length(String hash, ThumbnailSize size) throws IOException {
+        try {
+            return Files.size(pathOf(hash, size));
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    //FileChannel.transferToで書き出す（OSが対応していればユーザ空間へのコピーなし）
+    @Override
+    public long transferTo(String hash, ThumbnailSize size, long position, long count, WritableByteChannel target)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(pathOf(hash, size), StandardOpenOption.READ)) {
+            long end = Math.min(position + count, channel.size());
+            long offset = position;
+            while (offset < end) {
+                long n = channel.transferTo(offset, end - offset, target);
+                if (n <= 0) {
+                    break;
+                }
+                offset += n;
+            }
+            return offset - position;
+        }
+    }
+
+    @Override
+    public byte[] read(String hash, ThumbnailSize size) throws IOException {
+        try {
+            return Files.readAllBytes(pathOf(hash, size));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(pathOf(hash, null));
+        for (ThumbnailSize size : ThumbnailSize.values()) {
+            Files.deleteIfExists(pathOf(hash, size));
+        }
+    }
+
+    //ハッシュ以外の文字列でディレクトリの外を指さないよう、形式を確認する
+    Path pathOf(String hash, ThumbnailSize size) {
+        if (!ContentHash.isValid(hash)) {
+            throw new IllegalArgumentException("invalid image hash: " + hash);
+        }
+        String name = size == null ? hash : hash + "_" + size.getPixels();
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(name);
+    }
+
+}
@@ -0,0 +1,36 @@
+package sample.logic.image;
+
+//先頭のバイト列（マジックナンバー）による画像形式の判定。
+//アップロード時の検証と、配信時のContent-Typeに使います。
+public final class ImageFormat {
+
+    //判定に読む先頭のバイト数
+    public static final int HEAD_SIZE = 12;
+
+    public static final String UNKNOWN = "application/octet-stream";
+
+    private ImageFormat() {
+    }
+
+    //判定できない場合はUNKNOWN
+    public static String contentTypeOf(byte[] data) {
+        return contentTypeOf(data, data.length);
+    }
+
+    public static String contentTypeOf(byte[] data, int length) {
+        if (length >= 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8 && (data[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (length >= 8 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            return "image/png";
+        }
+        if (length >= 6 && data[0] == 'G' && data[1] == 'I' && data[2] == 'F') {
+            return "image/gif";
+        }
+        if (length >= 12 && data[0] == 'R' && data[1] == 'I' && data[8] == 'W' && data[9] == 'E') {
+            return "image/webp";
+        }
+        return UNKNOWN;
+    }
+
+}
@@ -0,0 +1,34 @@
+package sample.logic.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+//ポスター画像の保存先。元画像は内容のハッシュ（SHA-256）で識別し、縮小版は元画像のハッシュと大きさで識別します。
+//同じ内容の画像は一つだけ保存されます。sizeがnullの場合は元画像を表します。
+public interface ImageStore {
+
+    //保存して、内容のハッシュを返す
+    String put(InputStream in) throws IOException;
+
+    default String put(byte[] data) throws IOException {
+        return put(new ByteArrayInputStream(data));
+    }
+
+    void putVariant(String hash, ThumbnailSize size, byte[] data) throws IOException;
+
+    //バイト数。ない場合は-1
+    long length(String hash, ThumbnailSize size) throws IOException;
+
+    //positionからcountバイトをtargetへ書き出し、書き出したバイト数を返す
+    long transferTo(String hash, ThumbnailSize size, long position, long count, WritableByteChannel target)
+            throws IOException;
+
+    //ない場合はnull
+    byte[] read(String hash, ThumbnailSize size) throws IOException;
+
+    //元画像と縮小版を削除する
+    void delete(String hash) throws IOException;
+
+}
@@ -0,0 +1,129 @@
+package sample.logic.image;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MOVIE_IMAGE のポスター画像を画像ストア（FileImageStore）へ移す移行ツール。
+ * <pre>
+ * java -cp (クラスパス) sample.logic.image.ImageStoreMigration jdbc:mysql://localhost:3306/yourlibrary ユーザ パスワード [保存先]
+ * </pre>
+ * 保存先を省略した場合は yourlibrary.image.store.dir（FileImageStoreの既定値）を使います。
+ * 映画ごとに、画像をストアへ書いてから MOVIE.IMAGE_HASH を設定し、MOVIE_IMAGE の行を削除します。
+ * 縮小版がない画像は、ここで作成します。途中で止めても、再実行すると残りの画像から続けます。
+ */
+public class ImageStoreMigration {
+
+    //一度に読む行数（1トランザクション）
+    private static final int CHUNK_SIZE = 100;
+
+    private final Connection con;
+
+    private final ImageStore store;
+
+    private final ThumbnailService thumbnailService = new ThumbnailService();
+
+    public ImageStoreMigration(Connection con, ImageStore store) {
+        this.con = con;
+        this.store = store;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: ImageStoreMigration jdbcUrl user password [storeDir]");
+            System.exit(1);
+        }
+        FileImageStore store = args.length > 3 ? new FileImageStore(Paths.get(args[3])) : new FileImageStore();
+        try (Connection con = DriverManager.getConnection(args[0], args[1], args[2])) {
+            long start = System.currentTimeMillis();
+            int count = new ImageStoreMigration(con, store).migrate();
+            System.out.printf("%d images moved to %s in %d ms%n", count, store.getRoot(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    public int migrate() throws Exception {
+        con.setAutoCommit(false);
+        int count = 0;
+        while (true) {
+            List<Long> ids = nextIds();
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (Long id : ids) {
+                migrate(id);
+                count++;
+            }
+            con.commit();
+        }
+        return count;
+    }
+
+    //画像の残っている映画のID。移した行は削除するため、常に先頭から読む
+    private List<Long> nextIds() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT MOVIE_ID FROM MOVIE_IMAGE WHERE IMG_DAT IS NOT NULL ORDER BY MOVIE_ID LIMIT ?")) {
+            ps.setInt(1, CHUNK_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        con.commit();
+        return ids;
+    }
+
+    private void migrate(long movieId) throws Exception {
+        String hash;
+        Map<ThumbnailSize, byte[]> thumbnails = new EnumMap<>(ThumbnailSize.class);
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT IMG_DAT, THUMB_64, THUMB_200, THUMB_400 FROM MOVIE_IMAGE WHERE MOVIE_ID = ?")) {
+            ps.setLong(1, movieId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                //元画像はストリームのままストアへ書く
+                try (InputStream in = rs.getBinaryStream(1)) {
+                    hash = store.put(in);
+                }
+                putIfPresent(thumbnails, ThumbnailSize.SMALL, rs.getBytes(2));
+                putIfPresent(thumbnails, ThumbnailSize.MEDIUM, rs.getBytes(3));
+                putIfPresent(thumbnails, ThumbnailSize.LARGE, rs.getBytes(4));
+            }
+        }
+        if (thumbnails.isEmpty()) {
+            thumbnails = thumbnailService.render(store.read(hash, null));
+        }
+        for (Map.Entry<ThumbnailSize, byte[]> entry : thumbnails.entrySet()) {
+            store.putVariant(hash, entry.getKey(), entry.getValue());
+        }
+
+        try (PreparedStatement ps = con.prepareStatement("UPDATE MOVIE SET IMAGE_HASH = ? WHERE ID = ?")) {
+            ps.setString(1, hash);
+            ps.setLong(2, movieId);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = con.prepareStatement("DELETE FROM MOVIE_IMAGE WHERE MOVIE_ID = ?")) {
+            ps.setLong(1, movieId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void putIfPresent(Map<ThumbnailSize, byte[]> thumbnails, ThumbnailSize size, byte[] data) {
+        if (data != null) {
+            thumbnails.put(size, data);
+        }
+    }
+
+}
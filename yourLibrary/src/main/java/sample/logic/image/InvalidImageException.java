@@ -0,0 +1,14 @@
+package sample.logic.image;
+
+import java.io.IOException;
+
+//アップロードされたファイルが画像の制限（大きさ・形式）を満たさない
+public class InvalidImageException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidImageException(String message) {
+        super(message);
+    }
+
+}
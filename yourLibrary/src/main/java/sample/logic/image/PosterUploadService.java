@@ -0,0 +1,182 @@
+package sample.logic.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.entity.ImageStatus;
+import sample.logic.MovieManager;
+
+//ポスター画像のアップロード。
+//リクエストではアップロードを一時ファイルに書き出しながら大きさ・形式を検証し（stage）、
+//画像ストアへの保存・縮小版の作成は件数を制限したスレッドプールで行います（process）。
+//プールと待ち行列が埋まっている場合は、呼び出したスレッドで処理します（それ以上は受け付けない）。
+@ApplicationScoped
+public class PosterUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosterUploadService.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final long MAX_BYTES = Long.getLong("yourlibrary.upload.maxBytes", 10L * 1024 * 1024);
+
+    //デコード後の画素数の上限（縦x横）。小さなファイルで巨大な画像を作られるのを防ぐ
+    private static final long MAX_PIXELS = Long.getLong("yourlibrary.upload.maxPixels", 40L * 1000 * 1000);
+
+    private static final int WORKERS = Integer.getInteger("yourlibrary.upload.workers", 2);
+
+    private static final int QUEUE_SIZE = Integer.getInteger("yourlibrary.upload.queueSize", 16);
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Inject
+    private ImageStore imageStore;
+
+    @Inject
+    private ThumbnailService thumbnailService;
+
+    @Inject
+    private MovieManager movieManager;
+
+    private final Path dir;
+
+    private final long maxBytes;
+
+    private ThreadPoolExecutor executor;
+
+    public PosterUploadService() {
+        this(Paths.get(System.getProperty("yourlibrary.upload.dir",
+                System.getProperty("java.io.tmpdir") + "/yourlibrary-upload")), MAX_BYTES);
+    }
+
+    PosterUploadService(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    @PostConstruct
+    public void start() {
+        ThreadFactory factory = threadFactory != null ? threadFactory : Executors.defaultThreadFactory();
+        executor = new ThreadPoolExecutor(WORKERS, WORKERS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    //アップロードを一時ファイルに書き出す。制限を満たさない場合はInvalidImageException（一時ファイルは残さない）
+    public Path stage(InputStream in) throws IOException {
+        Files.createDirectories(dir);
+        Path staged = Files.createTempFile(dir, "poster", null);
+        boolean ok = false;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            //先頭のバイト列で形式を確認してから書き始める
+            int head = 0;
+            for (int n; head < ImageFormat.HEAD_SIZE && (n = in.read(buffer, head, BUFFER_SIZE - head)) > 0;) {
+                head += n;
+            }
+            if (head == 0) {
+                throw new InvalidImageException("画像が空です");
+            }
+            if (ImageFormat.UNKNOWN.equals(ImageFormat.contentTypeOf(buffer, head))) {
+                throw new InvalidImageException("画像ファイル（JPEG・PNG・GIF）ではありません");
+            }
+            long total = 0;
+            try (OutputStream out = Files.newOutputStream(staged)) {
+                for (int n = head; n > 0; n = in.read(buffer)) {
+                    total += n;
+                    if (total > maxBytes) {
+                        throw new InvalidImageException("画像が大きすぎます（" + maxBytes / 1024 + "KBまで）");
+                    }
+                    out.write(buffer, 0, n);
+                }
+            }
+            checkPixels(staged);
+            ok = true;
+            return staged;
+        } finally {
+            if (!ok) {
+                Files.deleteIfExists(staged);
+            }
+        }
+    }
+
+    //ヘッダーだけを読んで画素数を確認する
+    private static void checkPixels(Path staged) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(staged.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new InvalidImageException("画像として読み込めません");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    throw new InvalidImageException("画像の画素数が多すぎます");
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    //一時ファイルの画像を映画のポスターとして保存する。映画の画像の状態はPROCESSINGにしておく
+    public void process(long movieId, Path staged) {
+        executor.execute(() -> run(movieId, staged));
+    }
+
+    void run(long movieId, Path staged) {
+        long start = System.currentTimeMillis();
+        try {
+            String hash;
+            try (InputStream in = Files.newInputStream(staged)) {
+                hash = imageStore.put(in);
+            }
+            Map<ThumbnailSize, byte[]> thumbnails = thumbnailService.renderFile(staged);
+            for (Map.Entry<ThumbnailSize, byte[]> entry : thumbnails.entrySet()) {
+                imageStore.putVariant(hash, entry.getKey(), entry.getValue());
+            }
+            if (!movieManager.completeImage(movieId, hash)) {
+                logger.info("poster upload: movieId={} was removed", movieId);
+            }
+            logger.debug("poster upload: movieId={} {}ms", movieId, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("poster upload failed: movieId={}", movieId, e);
+            movieManager.updateImageStatus(movieId, ImageStatus.FAILED);
+        } finally {
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                logger.warn("poster upload: could not delete {}", staged, e);
+            }
+        }
+    }
+
+}
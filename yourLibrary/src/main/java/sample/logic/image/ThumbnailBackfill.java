@@ -0,0 +1,82 @@
+package sample.logic.image;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.logic.MovieManager;
+
+//縮小版のない既存のポスター画像に、起動後バックグラウンドで縮小版を作ります。
+//1件ずつ別トランザクションで保存するため、途中で停止しても次回の起動で続きから作ります。
+@ApplicationScoped
+public class ThumbnailBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailBackfill.class);
+
+    //一度に対象のIDを読む件数
+    private static final int BATCH_SIZE = 100;
+
+    private static final boolean ENABLED = Boolean
+            .parseBoolean(System.getProperty("yourlibrary.thumbnail.backfill", "true"));
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    private MovieManager movieManager;
+
+    @Inject
+    private ThumbnailService thumbnailService;
+
+    private volatile boolean stopped;
+
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (ENABLED) {
+            executor.submit(this::run);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    void run() {
+        long start = System.currentTimeMillis();
+        long lastId = Long.MIN_VALUE;
+        int count = 0;
+        try {
+            while (!stopped) {
+                List<Long> ids = movieManager.findImageIdsWithoutThumbnails(lastId, BATCH_SIZE);
+                for (Long id : ids) {
+                    if (stopped) {
+                        break;
+                    }
+                    Map<ThumbnailSize, byte[]> thumbnails = thumbnailService.render(movieManager.findImageData(id));
+                    if (!thumbnails.isEmpty()) {
+                        movieManager.saveThumbnails(id, thumbnails);
+                        count++;
+                    }
+                    lastId = id;
+                }
+                if (ids.size() < BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("thumbnail backfill stopped at movieId={}", lastId, e);
+        }
+        logger.info("thumbnail backfill: {} images in {}ms", count, System.currentTimeMillis() - start);
+    }
+
+}
@@ -0,0 +1,128 @@
+package sample.logic.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//アップロードされたポスター画像から、ThumbnailSizeごとの縮小版（JPEG）を作ります。
+//元画像より大きい縮小版は作りません（表示時は元画像を使います）。
+@ApplicationScoped
+public class ThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailService.class);
+
+    //JPEGの画質
+    private static final float QUALITY = Float.parseFloat(System.getProperty("yourlibrary.thumbnail.quality", "0.85"));
+
+    //画像として読めない場合は空
+    public Map<ThumbnailSize, byte[]> render(byte[] original) {
+        if (original == null || original.length == 0) {
+            return Collections.emptyMap();
+        }
+        try {
+            return render(ImageIO.read(new ByteArrayInputStream(original)));
+        } catch (IOException e) {
+            logger.warn("thumbnail: unreadable image ({} bytes)", original.length, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    //アップロードの一時ファイルから（元画像をヒープに読み込まない）
+    public Map<ThumbnailSize, byte[]> renderFile(Path original) throws IOException {
+        try (InputStream in = Files.newInputStream(original)) {
+            return render(ImageIO.read(in));
+        }
+    }
+
+    private Map<ThumbnailSize, byte[]> render(BufferedImage source) {
+        if (source == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<ThumbnailSize, byte[]> result = new EnumMap<>(ThumbnailSize.class);
+        //大きい順に作り、前の縮小版から次を縮小する
+        BufferedImage current = source;
+        ThumbnailSize[] sizes = ThumbnailSize.values();
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            ThumbnailSize size = sizes[i];
+            if (Math.max(source.getWidth(), source.getHeight()) <= size.getPixels()) {
+                continue;
+            }
+            current = scale(current, source.getWidth(), source.getHeight(), size.getPixels());
+            try {
+                result.put(size, encode(current));
+            } catch (IOException e) {
+                logger.warn("thumbnail: failed to encode {}", size, e);
+            }
+        }
+        return result;
+    }
+
+    //元画像（originalWidth x originalHeight）の長辺をpixelsに合わせて縮小する。
+    //縮小率が大きい場合は半分ずつ縮めて画質を保つ
+    static BufferedImage scale(BufferedImage source, int originalWidth, int originalHeight, int pixels) {
+        double ratio = (double) pixels / Math.max(originalWidth, originalHeight);
+        int width = Math.max(1, (int) Math.round(originalWidth * ratio));
+        int height = Math.max(1, (int) Math.round(originalHeight * ratio));
+
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                //JPEGは透過できないため背景を白にする
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+}
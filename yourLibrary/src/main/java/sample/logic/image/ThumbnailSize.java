@@ -0,0 +1,42 @@
+package sample.logic.image;
+
+//ポスター画像の縮小版の大きさ。長辺のピクセル数と、『映画画像』(MOVIE_IMAGE)の属性名を持ちます
+public enum ThumbnailSize {
+
+    //一覧のアイコン
+    SMALL(64, "thumbnail64"),
+
+    //カート・グリッド
+    MEDIUM(200, "thumbnail200"),
+
+    //詳細表示
+    LARGE(400, "thumbnail400");
+
+    private final int pixels;
+
+    private final String attributeName;
+
+    ThumbnailSize(int pixels, String attributeName) {
+        this.pixels = pixels;
+        this.attributeName = attributeName;
+    }
+
+    public int getPixels() {
+        return pixels;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    //表示サイズ以上で最も小さい縮小版。どれよりも大きい場合はnull（元画像を使う）
+    public static ThumbnailSize fitting(int pixels) {
+        for (ThumbnailSize size : values()) {
+            if (size.pixels >= pixels) {
+                return size;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,149 @@
+package sample.logic.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sample.util.collection.LongHashSet;
+
+//文字バイグラムの転置インデックス。部分一致検索（LIKE '%x%'相当）をID集合に解決します。
+//大文字・小文字は区別しません。スレッドセーフです。
+public class NGramIndex {
+
+    //ID→索引済みの文字列（候補の最終確認に使う）
+    private final Map<Long, String> documents = new HashMap<>();
+
+    //バイグラム→そのバイグラムを含むID
+    private final Map<Integer, LongHashSet> postings = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void put(long id, String text) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            String normalized = normalize(text);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            documents.put(id, normalized);
+            for (int i = 0; i + 1 < normalized.length(); i++) {
+                postings.computeIfAbsent(gram(normalized, i), k -> new LongHashSet()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(long id) {
+        String old = documents.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (int i = 0; i + 1 < old.length(); i++) {
+            Integer key = gram(old, i);
+            LongHashSet ids = postings.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    //termを含む文字列のIDを返す
+    public LongHashSet search(String term) {
+        String normalized = normalize(term);
+        lock.readLock().lock();
+        try {
+            LongHashSet result = new LongHashSet();
+            if (normalized.isEmpty()) {
+                return result;
+            }
+            //1文字の場合はバイグラムが作れないので全件を確認する
+            if (normalized.length() == 1) {
+                for (Map.Entry<Long, String> doc : documents.entrySet()) {
+                    if (doc.getValue().contains(normalized)) {
+                        result.add(doc.getKey());
+                    }
+                }
+                return result;
+            }
+
+            List<LongHashSet> candidates = new ArrayList<>();
+            for (int i = 0; i + 1 < normalized.length(); i++) {
+                LongHashSet ids = postings.get(gram(normalized, i));
+                if (ids == null) {
+                    return result;
+                }
+                if (!candidates.contains(ids)) {
+                    candidates.add(ids);
+                }
+            }
+            //件数の少ない順に絞り込む
+            candidates.sort(Comparator.comparingInt(LongHashSet::size));
+            LongHashSet smallest = candidates.get(0);
+            List<LongHashSet> others = candidates.subList(1, candidates.size());
+            smallest.forEach(id -> {
+                for (LongHashSet ids : others) {
+                    if (!ids.contains(id)) {
+                        return;
+                    }
+                }
+                //バイグラムが揃っていても連続しているとは限らないため、文字列で確認する
+                if (documents.get(id).contains(normalized)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Integer gram(String text, int i) {
+        return (text.charAt(i) << 16) | text.charAt(i + 1);
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+}
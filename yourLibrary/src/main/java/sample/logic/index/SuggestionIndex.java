@@ -0,0 +1,147 @@
+package sample.logic.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//入力補完の候補。値ごとの出現数を持ち、前方一致（ソート済みマップ）→部分一致（NGramIndex）の順に
+//出現数の多いものから上位k件を返します。値の追加・削除で差分更新します。スレッドセーフです。
+public class SuggestionIndex {
+
+    //出現数の多い順、同数なら値の昇順
+    private static final Comparator<Term> RANKING = Comparator.comparingInt((Term t) -> t.count).reversed()
+            .thenComparing(t -> t.value);
+
+    //正規化した値→候補
+    private final NavigableMap<String, Term> terms = new TreeMap<>();
+
+    //候補のキー→候補（部分一致の結果から引く）
+    private final Map<Long, Term> termsByKey = new HashMap<>();
+
+    private final NGramIndex substringIndex = new NGramIndex();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long nextKey = 1;
+
+    private static class Term {
+        final long key;
+        final String value;
+        int count;
+
+        Term(long key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    public void add(String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Term term = terms.get(normalize(value));
+            if (term == null) {
+                term = new Term(nextKey++, value);
+                terms.put(normalize(value), term);
+                termsByKey.put(term.key, term);
+                substringIndex.put(term.key, value);
+            }
+            term.count++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Term term = terms.get(normalize(value));
+            if (term != null && --term.count <= 0) {
+                terms.remove(normalize(value));
+                termsByKey.remove(term.key);
+                substringIndex.remove(term.key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //inputで始まる値を優先し、足りなければinputを含む値で補う
+    public List<String> complete(String input, int limit) {
+        String prefix = normalize(input);
+        lock.readLock().lock();
+        try {
+            if (prefix.isEmpty()) {
+                return top(terms.values(), limit);
+            }
+            List<String> result = top(terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values(), limit);
+            if (result.size() >= limit) {
+                return result;
+            }
+
+            List<Term> contains = new ArrayList<>();
+            substringIndex.search(prefix).forEach(key -> {
+                Term term = termsByKey.get(key);
+                if (term != null && !normalize(term.value).startsWith(prefix)) {
+                    contains.add(term);
+                }
+            });
+            result.addAll(top(contains, limit - result.size()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //上位limit件を、件数分のヒープで選ぶ
+    private static List<String> top(Iterable<Term> candidates, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Term> heap = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Term term : candidates) {
+            heap.add(term);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Term> ranked = new ArrayList<>(heap);
+        Collections.sort(ranked, RANKING);
+        List<String> result = new ArrayList<>(ranked.size());
+        for (Term term : ranked) {
+            result.add(term.value);
+        }
+        return result;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+}
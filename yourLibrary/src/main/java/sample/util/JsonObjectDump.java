@@ -1,23 +1,370 @@
 package sample.util;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.type.ArrayType;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.type.MapType;
+import com.fasterxml.jackson.databind.util.NameTransformer;
 
+//ログ出力用に、オブジェクトをJSONにします。
+//ObjectWriterは共有し（スレッドセーフ）、出力は文字数で打ち切ります。
+//深さの上限を超える値（オブジェクト・配列）は「…」に置き換え、その先は出力しません（浅い部分は最後まで出力する）。
+//大きなエンティティ（関連・画像を含むもの）を出力しても、ログが肥大しないようにするためです。
 public class JsonObjectDump {
 
+    //入れ子の深さの上限。超える値は「…」にする
+    private static final int MAX_DEPTH = Integer.getInteger("yourlibrary.log.dump.maxDepth", 4);
+
+    //文字数の上限。超える部分は出力しない
+    private static final int MAX_CHARS = Integer.getInteger("yourlibrary.log.dump.maxChars", 4096);
+
+    //出力する割合（0〜1）。1ならすべて出力する
+    private static final double SAMPLE_RATE = Double
+            .parseDouble(System.getProperty("yourlibrary.log.dump.sampleRate", "1.0"));
+
+    private static final String TRUNCATED = " ...(truncated)";
+
+    //深さの上限を超えた値の代わりに出力する
+    private static final String SKIPPED = "…";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .registerModule(new SimpleModule().setSerializerModifier(new SkippingModifier()));
+
+    private static final ObjectWriter WRITER = MAPPER.writer().with(SerializationFeature.INDENT_OUTPUT);
+
+    //打ち切りの合図（スタックトレースは作らない）
+    private static class Truncated extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    //深さの上限を超えた値を「…」に置き換えた合図。受け取った所で開いている配列・オブジェクトを閉じて続ける
+    private static class Skipped extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    //JSONにする対象か。参照型のみが出力対象とする（null・文字列・数値等は値をそのままログに出す）
+    public static boolean isDumpTarget(Object parameter) {
+        return parameter != null && !(parameter instanceof CharSequence || parameter instanceof Number
+                || parameter instanceof Boolean || parameter instanceof Character || parameter instanceof Enum);
+    }
+
+    //出力対象でない（null・文字列・数値等）場合はnull
     public static String getJsonString(Object parameter) {
 
-        //参照型のみが出力対象とする
-        if (!parameter.getClass().isPrimitive() && !(parameter instanceof String)) {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        if (!isDumpTarget(parameter)) {
+            return null;
+        }
+        LimitedWriter out = new LimitedWriter(MAX_CHARS);
+        JsonGenerator generator = null;
+        try {
+            generator = new DepthLimitedGenerator(MAPPER.getFactory().createGenerator(out), MAX_DEPTH);
+            try {
+                WRITER.writeValue(generator, parameter);
+            } catch (IOException e) {
+                //プロパティの外（配列の要素等）で置き換えた場合
+                if (!isCaused(e, Skipped.class)) {
+                    throw e;
+                }
+                closeTo(generator, 0);
+                generator.flush();
+            }
+            return out.toString();
+        } catch (IOException e) {
+            if (!isCaused(e, Truncated.class)) {
+                return parameter.getClass().getName() + " (" + e + ")";
+            }
+            try {
+                if (generator != null) {
+                    generator.flush();
+                }
+            } catch (IOException | RuntimeException ignore) {
+                //上限までの出力を残す
+            }
+            return out.toString() + TRUNCATED;
+        }
+    }
+
+    //ログを出力する時に初めてJSONにする（logger.debug("{}", JsonObjectDump.lazy(value)) のように使う）
+    public static Object lazy(Object parameter) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return getJsonString(parameter);
+            }
+        };
+    }
+
+    //この呼び出しを出力するか（sampleRateの割合で出力する）
+    public static boolean sampled() {
+        return SAMPLE_RATE >= 1.0 || ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
+    }
+
+    private static boolean isCaused(Throwable e, Class<? extends IOException> type) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int depth(JsonGenerator generator) {
+        int depth = 0;
+        for (JsonStreamContext c = generator.getOutputContext(); c != null && !c.inRoot(); c = c.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    //指定の深さまで、開いている配列・オブジェクトを閉じる
+    private static void closeTo(JsonGenerator generator, int depth) throws IOException {
+        for (int d = depth(generator); d > depth; d--) {
+            if (generator.getOutputContext().inArray()) {
+                generator.writeEndArray();
+            } else {
+                generator.writeEndObject();
+            }
+        }
+    }
+
+    //オブジェクト・配列を書くシリアライザー（Bean・コレクション・配列・Map）をSkippingSerializerで包む
+    private static class SkippingModifier extends BeanSerializerModifier {
+
+        @Override
+        public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc,
+                JsonSerializer<?> serializer) {
+            return new SkippingSerializer(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyArraySerializer(SerializationConfig config, ArrayType valueType,
+                BeanDescription beanDesc, JsonSerializer<?> serializer) {
+            return new SkippingSerializer(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyCollectionSerializer(SerializationConfig config, CollectionType valueType,
+                BeanDescription beanDesc, JsonSerializer<?> serializer) {
+            return new SkippingSerializer(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyMapSerializer(SerializationConfig config, MapType valueType,
+                BeanDescription beanDesc, JsonSerializer<?> serializer) {
+            return new SkippingSerializer(serializer);
+        }
+    }
+
+    //値を「…」に置き換えた場合は、この値の中で開いている配列・オブジェクトを閉じて、次のプロパティ・要素に進む
+    private static class SkippingSerializer extends JsonSerializer<Object>
+            implements ContextualSerializer, ResolvableSerializer {
+        private final JsonSerializer<Object> delegate;
+
+        @SuppressWarnings("unchecked")
+        SkippingSerializer(JsonSerializer<?> delegate) {
+            this.delegate = (JsonSerializer<Object>) delegate;
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            int depth = depth(gen);
+            try {
+                delegate.serialize(value, gen, serializers);
+            } catch (IOException e) {
+                skipped(e, gen, depth);
+            }
+        }
+
+        @Override
+        public void serializeWithType(Object value, JsonGenerator gen, SerializerProvider serializers,
+                TypeSerializer typeSer) throws IOException {
+            int depth = depth(gen);
             try {
-                return mapper.writeValueAsString(parameter);
-            } catch (JsonProcessingException e) {
-                e.printStackTrace();
+                delegate.serializeWithType(value, gen, serializers, typeSer);
+            } catch (IOException e) {
+                skipped(e, gen, depth);
+            }
+        }
+
+        private static void skipped(IOException e, JsonGenerator gen, int depth) throws IOException {
+            if (!isCaused(e, Skipped.class)) {
+                throw e;
+            }
+            closeTo(gen, depth);
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider prov, BeanProperty property)
+                throws JsonMappingException {
+            JsonSerializer<?> contextual = prov.handleSecondaryContextualization(delegate, property);
+            return contextual == delegate ? this : new SkippingSerializer(contextual);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) delegate).resolve(provider);
+            }
+        }
+
+        @Override
+        public JsonSerializer<Object> unwrappingSerializer(NameTransformer unwrapper) {
+            JsonSerializer<Object> unwrapping = delegate.unwrappingSerializer(unwrapper);
+            return unwrapping == delegate ? this : new SkippingSerializer(unwrapping);
+        }
+
+        @Override
+        public boolean isUnwrappingSerializer() {
+            return delegate.isUnwrappingSerializer();
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Object value) {
+            return delegate.isEmpty(provider, value);
+        }
+
+        @Override
+        public boolean usesObjectId() {
+            return delegate.usesObjectId();
+        }
+
+        @Override
+        public Class<Object> handledType() {
+            return delegate.handledType();
+        }
+
+        @Override
+        public Iterator<PropertyWriter> properties() {
+            return delegate.properties();
+        }
+
+        @Override
+        public JsonSerializer<?> getDelegatee() {
+            return delegate;
+        }
+    }
+
+    //上限の文字数を超えたら打ち切るWriter
+    private static class LimitedWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+        private final int limit;
+
+        LimitedWriter(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int room = limit - buffer.length();
+            buffer.append(cbuf, off, Math.min(room, len));
+            if (len > room) {
+                throw new Truncated();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+
+    //オブジェクト・配列を始める時に深さを確認し、上限を超えたら代わりに「…」を書いてSkippedを投げる
+    private static class DepthLimitedGenerator extends JsonGeneratorDelegate {
+        private final int maxDepth;
+
+        DepthLimitedGenerator(JsonGenerator delegate, int maxDepth) {
+            super(delegate, false);
+            this.maxDepth = maxDepth;
+        }
+
+        private void checkDepth() throws IOException {
+            if (depth(this) >= maxDepth) {
+                delegate.writeString(SKIPPED);
+                throw new Skipped();
             }
         }
-        return null;
+
+        @Override
+        public void writeStartObject() throws IOException {
+            checkDepth();
+            super.writeStartObject();
+        }
+
+        @Override
+        public void writeStartObject(Object forValue) throws IOException {
+            checkDepth();
+            super.writeStartObject(forValue);
+        }
+
+        @Override
+        public void writeStartObject(Object forValue, int size) throws IOException {
+            checkDepth();
+            super.writeStartObject(forValue, size);
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            checkDepth();
+            super.writeStartArray();
+        }
+
+        @Override
+        public void writeStartArray(int size) throws IOException {
+            checkDepth();
+            super.writeStartArray(size);
+        }
+
+        @Override
+        public void writeStartArray(Object forValue) throws IOException {
+            checkDepth();
+            super.writeStartArray(forValue);
+        }
+
+        @Override
+        public void writeStartArray(Object forValue, int size) throws IOException {
+            checkDepth();
+            super.writeStartArray(forValue, size);
+        }
     }
 }
@@ -10,6 +10,7 @@ import javax.enterprise.inject.Stereotype;
 import javax.transaction.Transactional;
 
 import sample.util.interceptor.WithLog;
+import sample.util.interceptor.WithMetrics;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ ElementType.TYPE })
@@ -18,5 +19,6 @@ import sample.util.interceptor.WithLog;
 @Transactional
 @ApplicationScoped
 @WithLog
+@WithMetrics
 public @interface Service {
 }
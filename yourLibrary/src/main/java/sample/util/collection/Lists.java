@@ -0,0 +1,21 @@
+package sample.util.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Listの補助。
+public final class Lists {
+
+    private Lists() {
+    }
+
+    //sizeずつに分割する（IN句に渡す件数を抑えるためのもの）。要素は元のListのビューです
+    public static <T> List<List<T>> partition(List<T> list, int size) {
+        final List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            chunks.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return chunks;
+    }
+
+}
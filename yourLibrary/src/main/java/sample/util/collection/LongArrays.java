@@ -0,0 +1,58 @@
+package sample.util.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//画面の状態に持つIDの配列（long[]）の補助。件数が少ない前提で、線形に探します。
+public final class LongArrays {
+
+    public static final long[] EMPTY = new long[0];
+
+    private LongArrays() {
+    }
+
+    public static boolean contains(long[] array, long value) {
+        return indexOf(array, value) >= 0;
+    }
+
+    public static int indexOf(long[] array, long value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //含まれていなければ末尾に追加した配列を返す
+    public static long[] append(long[] array, long value) {
+        if (contains(array, value)) {
+            return array;
+        }
+        long[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    //含まれていれば取り除いた配列を返す
+    public static long[] remove(long[] array, long value) {
+        int index = indexOf(array, value);
+        if (index < 0) {
+            return array;
+        }
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    public static List<Long> asList(long[] array) {
+        List<Long> list = new ArrayList<>(array.length);
+        for (long value : array) {
+            list.add(value);
+        }
+        return list;
+    }
+
+}
@@ -1,6 +1,7 @@
 package sample.util.filter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.servlet.Filter;
@@ -19,6 +20,8 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import sample.entity.User;
+import sample.util.metrics.LatencyMetrics;
+import sample.util.metrics.MetricsRegistry;
 import sample.view.util.SessionInfo;
 
 @WebFilter("/*")
@@ -26,9 +29,30 @@ public class PageRequestFilter implements Filter {
 
 	private static final Logger logger = LoggerFactory.getLogger(PageRequestFilter.class);
 
+	//リクエストごとにログを出すか（通常は、MetricsRegistryが定期的に出す集計で確認する）
+	private static final boolean LOG_EACH_REQUEST = Boolean.getBoolean("yourlibrary.request.log");
+
+	//JSFのリソース（CSS・JavaScript・画像）のパス
+	private static final String FACES_RESOURCE = "/javax.faces.resource";
+
+	//リクエストの種類。画面ごとに種類を分けて計測する
+	enum Kind {
+		//画面の表示
+		PAGE,
+		//画面からのPOST（ajax以外）
+		POSTBACK,
+		//JSFのajax
+		AJAX,
+		//画面以外（JSFのリソース・ポスター画像等）
+		RESOURCE
+	}
+
 	@Inject
 	SessionInfo sessionInfo;
 
+	@Inject
+	MetricsRegistry metricsRegistry;
+
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException {
 		// TODO 自動生成されたメソッド・スタブ
@@ -43,68 +67,108 @@ public class PageRequestFilter implements Filter {
 		request.setCharacterEncoding(encording);
 
 		HttpServletRequest req = (HttpServletRequest) request;
-		HttpSession session = req.getSession();
 
 		String contextPath = req.getContextPath();
 		String uri = req.getRequestURI();
 		String method = req.getMethod();
 
-		String uriRegex = "/\\w*.xhtml";
-
-		if (uri.matches(contextPath + uriRegex)) {
-			logger.info("アクセス： [" + method + "] " + uri);
+		String viewId = viewIdOf(contextPath, uri);
+		Kind kind = kindOf(viewId, method, req.getHeader("Faces-Request"));
+
+		// 画面以外は、セッション・ログイン情報を使わない（セッションを作らない）
+		if (kind != Kind.RESOURCE) {
+			HttpSession session = req.getSession();
+
+			//SLF4j出力用のユーザー・セッション取得
+			User user = sessionInfo.getLoginUser();
+			String userId = "";
+			if (user != null) {
+				userId = user.getAccount();
+			}
+			if (!"".equals(userId)) {
+				MDC.put("userId", userId);
+			} else {
+				MDC.put("userId", "未設定");
+			}
+			if (session != null) {
+				MDC.put("sessionId", session.getId());
+			}
+
+			if (uri.equals(contextPath) || uri.equals(contextPath + "/index.xhtml")) {
+				// ログイン処理時はなにもしない
+
+			} else if (session == null) {
+				//TODO ユーザー認可
+				// セッションが切れたらログイン画面に戻る
+				//			request.setAttribute("msg", "セッションが切れました");
+				//			RequestDispatcher rd = request.getRequestDispatcher("/index.xhtml");
+				//			rd.forward(request, response);
+				//			return;
+
+				// ログイン情報が存在しない場合、ログイン画面に強制遷移する。
+				//			String contextPath = ((HttpServletRequest) request).getContextPath();
+				((HttpServletResponse) response).sendRedirect(contextPath + "/view/login/login.xhtml");
+			}
 		}
 
-		//SLF4j出力用のユーザー・セッション取得
-		User user = sessionInfo.getLoginUser();
-		String userId = "";
-		if (user != null) {
-			userId = user.getAccount();
-		}
-		if (!"".equals(userId)) {
-			MDC.put("userId", userId);
-		} else {
-			MDC.put("userId", "未設定");
-		}
-		if (session != null) {
-			MDC.put("sessionId", session.getId());
+		// 時間計測開始
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			// サーブレットの実行
+			chain.doFilter(request, response);
+			failed = ((HttpServletResponse) response).getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+		} finally {
+			// 時間計測終了
+			long elapsed = System.nanoTime() - start;
+			LatencyMetrics metrics = metricsRegistry.forRequest(kind + " " + viewId);
+			metrics.record(elapsed, failed);
+
+			if (LOG_EACH_REQUEST && kind != Kind.RESOURCE) {
+				logger.info("アクセス：[{}] {} 処理時間：{}ms", method, uri, TimeUnit.NANOSECONDS.toMillis(elapsed));
+			}
+
+			MDC.remove("userId");
+			MDC.remove("sessionId");
 		}
 
-		if (uri.equals(contextPath) || uri.equals(contextPath + "/index.xhtml")) {
-			// ログイン処理時はなにもしない
+		// 遷移先の文字コード指定
+		response.setCharacterEncoding(encording);
 
-		} else if (session == null) {
-			//TODO ユーザー認可
-			// セッションが切れたらログイン画面に戻る
-			//			request.setAttribute("msg", "セッションが切れました");
-			//			RequestDispatcher rd = request.getRequestDispatcher("/index.xhtml");
-			//			rd.forward(request, response);
-			//			return;
+	}
 
-			// ログイン情報が存在しない場合、ログイン画面に強制遷移する。
-			//			String contextPath = ((HttpServletRequest) request).getContextPath();
-			((HttpServletResponse) response).sendRedirect(contextPath + "/view/login/login.xhtml");
+	//コンテキストパス以降のパス。JSFの画面はそのまま、それ以外は先頭の階層（例 /image）にまとめる
+	static String viewIdOf(String contextPath, String uri) {
+		String path = uri.startsWith(contextPath) ? uri.substring(contextPath.length()) : uri;
+		int semicolon = path.indexOf(';');
+		if (semicolon >= 0) {
+			// ;jsessionid=...
+			path = path.substring(0, semicolon);
 		}
-
-		// 時間計測開始
-		long start = System.currentTimeMillis();
-
-		// サーブレットの実行
-		chain.doFilter(request, response);
-
-		// 時間計測終了
-		long end = System.currentTimeMillis();
-
-		if (uri.matches(contextPath + uriRegex)) {
-			logger.info("アクセス：" + uri + " 処理時間：" + (end - start) + "ms");
+		if (path.startsWith("/faces/")) {
+			path = path.substring("/faces".length());
 		}
+		if (path.startsWith(FACES_RESOURCE + "/")) {
+			return FACES_RESOURCE;
+		}
+		if (path.endsWith(".xhtml")) {
+			return path;
+		}
+		if (path.isEmpty() || "/".equals(path)) {
+			return "/";
+		}
+		int slash = path.indexOf('/', 1);
+		return slash < 0 ? path : path.substring(0, slash);
+	}
 
-		MDC.remove("loginId");
-		MDC.remove("sessionId");
-
-		// 遷移先の文字コード指定
-		response.setCharacterEncoding(encording);
-
+	static Kind kindOf(String viewId, String method, String facesRequest) {
+		if (!viewId.endsWith(".xhtml") && !"/".equals(viewId)) {
+			return Kind.RESOURCE;
+		}
+		if ("partial/ajax".equals(facesRequest)) {
+			return Kind.AJAX;
+		}
+		return "POST".equals(method) ? Kind.POSTBACK : Kind.PAGE;
 	}
 
 	@Override
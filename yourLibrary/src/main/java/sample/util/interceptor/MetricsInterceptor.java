@@ -0,0 +1,56 @@
+package sample.util.interceptor;
+
+import java.io.Serializable;
+
+import javax.annotation.Priority;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+
+import sample.util.metrics.LatencyMetrics;
+import sample.util.metrics.MetricsRegistry;
+import sample.util.metrics.ServiceTime;
+
+//メソッドごとの呼び出し回数・例外の回数・応答時間を記録します。
+//画面のフェイズごとのサービスの時間（ServiceTime）も加算します。
+//コミットの時間も含めるため、トランザクションのインターセプター（PLATFORM_BEFORE + 200）より外側で動かします。
+@Interceptor // インターセプターの宣言
+@Dependent
+@WithMetrics // バインド用アノテーション
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 100) // 優先度
+public class MetricsInterceptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Inject
+    MetricsRegistry registry;
+
+    /**
+     * インターセプターのメソッド
+     * @param ic 実行コンテキスト - 本来実行される処理。
+     * @return 本来実行される処理の戻り値
+     * @throws Exception 何らかの例外
+     */
+    @AroundInvoke
+    public Object invoke(InvocationContext ic) throws Exception {
+        // ターゲットは、CDIのクライアントプロキシなので、スーパークラスを取得。
+        Class<?> targetClass = ic.getTarget().getClass();
+        Class<?> beanClass = targetClass.getSuperclass() != null ? targetClass.getSuperclass() : targetClass;
+        LatencyMetrics metrics = registry.forMethod(beanClass, ic.getMethod());
+
+        boolean failed = true;
+        long[] serviceTime = ServiceTime.begin();
+        long start = System.nanoTime();
+        try {
+            Object ret = ic.proceed();
+            failed = false;
+            return ret;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.record(elapsed, failed);
+            ServiceTime.end(serviceTime, elapsed);
+        }
+    }
+}
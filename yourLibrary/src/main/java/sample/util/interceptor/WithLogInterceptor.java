@@ -1,10 +1,11 @@
 package sample.util.interceptor;
 
 import java.io.Serializable;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Resource;
 import javax.enterprise.context.Dependent;
@@ -34,10 +35,47 @@ public class WithLogInterceptor implements Serializable {
     private static final List<String> ignoreObjects = Arrays.asList("org.primefaces.event.SelectEvent",
             "javax.faces.event.ActionEvent");
 
+    //対象クラスごと・メソッドごとのログ出力の情報。呼び出しのたびに名前・アノテーションを調べない
+    private static final ClassValue<ConcurrentMap<Method, MethodInfo>> methodInfos =
+            new ClassValue<ConcurrentMap<Method, MethodInfo>>() {
+                @Override
+                protected ConcurrentMap<Method, MethodInfo> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     // アプリケーション名の取得
     @Resource(lookup = "java:app/AppName")
     String appName;
 
+    //メソッドのログ出力の情報
+    static final class MethodInfo {
+        final String classAndMethod;
+        //@IgnoreLoggingが付いていればfalse
+        final boolean logging;
+        final String[] parameterTypeNames;
+        //JSONで出力する引数
+        final boolean[] dumpParameters;
+
+        MethodInfo(Class<?> targetClass, Method method) {
+            // ターゲットは、CDIのクライアントプロキシなので、スーパークラスを取得。
+            Class<?> beanClass = targetClass.getSuperclass() != null ? targetClass.getSuperclass() : targetClass;
+            this.classAndMethod = beanClass.getName() + "#" + method.getName();
+            this.logging = !method.isAnnotationPresent(IgnoreLogging.class);
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.parameterTypeNames = new String[parameterTypes.length];
+            this.dumpParameters = new boolean[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypeNames[i] = parameterTypes[i].getName();
+                dumpParameters[i] = !parameterTypes[i].isPrimitive() && !ignoreObjects.contains(parameterTypeNames[i]);
+            }
+        }
+    }
+
+    static MethodInfo methodInfo(Class<?> targetClass, Method method) {
+        return methodInfos.get(targetClass).computeIfAbsent(method, m -> new MethodInfo(targetClass, m));
+    }
+
     /**
      * インターセプターのメソッド
      * @param ic 実行コンテキスト - 本来実行される処理。
@@ -47,54 +85,35 @@ public class WithLogInterceptor implements Serializable {
     @AroundInvoke
     public Object invoke(InvocationContext ic) throws Exception {
 
-        // ターゲットは、CDIのクライアントプロキシなので、スーパークラスを取得。
-        String classAndMethod = ic.getTarget().getClass()
-                .getSuperclass().getName()
-                + "#" + ic.getMethod().getName();
-
-        Method method = ic.getMethod();
-        Class<?>[] parameterTypes = method.getParameterTypes();
-        Annotation[] annotations = method.getAnnotations();
-        Object[] parameter = ic.getParameters();
-
-        // ログ出力要否フラグ
-        boolean flg = true;
-
-        for (Annotation element : annotations) {
-            if (element instanceof IgnoreLogging) {
-                flg = false;
+        // ログ出力要否フラグ（DEBUGでなければ何もしない）
+        MethodInfo info = null;
+        if (logger.isDebugEnabled()) {
+            info = methodInfo(ic.getTarget().getClass(), ic.getMethod());
+            if (!info.logging) {
+                info = null;
             }
         }
 
-        if (flg) {
+        if (info != null) {
 
             // メソッド開始前のログ
-            //      logger.info(() -> appName + ":" + classAndMethod + " start.");
-            logger.debug(classAndMethod + " start>>");
-
-            int i = 0;
-            for (Class<?> parameterType : parameterTypes) {
-                logger.debug("\t" + "[PARAMETER] " + parameterType.getName() + " ,[VALUE] " + parameter[i++]);
-                if (!ignoreObjects.contains(parameterType.getName())
-                        && JsonObjectDump.getJsonString(parameter) != null) {
-                    logger.debug(JsonObjectDump.getJsonString(parameter));
+            logger.debug("{} start>>", info.classAndMethod);
+
+            // パラメータ出力（JSONは出力する時に作る）
+            Object[] parameters = ic.getParameters();
+            boolean dump = JsonObjectDump.sampled();
+            for (int i = 0; i < info.parameterTypeNames.length; i++) {
+                logger.debug("\t[PARAMETER] {} ,[VALUE] {}", info.parameterTypeNames[i], parameters[i]);
+                //文字列・数値等は上の行に値が出ているので、JSONにしない
+                if (dump && info.dumpParameters[i] && JsonObjectDump.isDumpTarget(parameters[i])) {
+                    logger.debug("{}", JsonObjectDump.lazy(parameters[i]));
                 }
             }
-
         }
 
-        // パラメータ出力
-        //        for (Object parameter : ic.getParameters()) {
-        //            logger.debug("\t" + "[PARAMETER] " + parameter);
-        //            if (JsonObjectDump.getJsonString(parameter) != null) {
-        //                logger.debug(JsonObjectDump.getJsonString(parameter));
-        //            }
-        //        }
-
         Object ret = null;
         try {
             // メソッドの実行   ＜次のインターセプターチェーンの実行＞
-            // System.out.println("call by interceptor");
             ret = ic.proceed();
         } catch (Exception e) {
             // 例外のログを出したら、例外はそのまま再スローする。
@@ -104,11 +123,10 @@ public class WithLogInterceptor implements Serializable {
             throw e;
         }
 
-        if (flg) {
+        if (info != null) {
 
             // メソッド終了後のログ
-            //      logger.info(() -> appName + ":" + classAndMethod + " end.");
-            logger.debug(classAndMethod + " end<<");
+            logger.debug("{} end<<", info.classAndMethod);
         }
 
         return ret;
@@ -6,15 +6,31 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.qos.logback.classic.AsyncAppender;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.joran.spi.JoranException;
+import sample.util.logging.RingBufferJsonAppender;
 
 public class LogbackListener implements ServletContextListener {
 	public static final String CONFIG_LOCATION = "logbackLocation";
 
+	//JSONの行で出力するファイル（%d は日付）。未設定の場合はlogback.xmlの設定のまま
+	public static final String JSON_FILE = "logbackJsonFile";
+	//バッファが混んだ時の動作（BLOCK, DROP_DEBUG_FIRST, SAMPLE）
+	public static final String JSON_POLICY = "logbackJsonPolicy";
+	//リングバッファの大きさ（イベント数）
+	public static final String JSON_CAPACITY = "logbackJsonCapacity";
+	//JSONのファイルに置き換える、rootのアペンダー（カンマ区切り）
+	public static final String JSON_REPLACES = "logbackJsonReplaces";
+	//JSONのファイルには置き換えず、AsyncAppenderを通して出力する、rootのアペンダー（カンマ区切り）
+	public static final String ASYNC_WRAPS = "logbackAsyncWraps";
+
 	@Override
 	public void contextInitialized(ServletContextEvent sce) {
 		ServletContext servletContext = sce.getServletContext();
@@ -26,6 +42,7 @@ public class LogbackListener implements ServletContextListener {
 			try {
 				configureLogback(loggerContext, url);
 				servletContext.log("loading[" + location + "] successful");
+				configureJsonAppender(servletContext, loggerContext);
 			} catch (JoranException e) {
 				servletContext.log("Could not load[" + location + "]");
 			}
@@ -51,6 +68,66 @@ public class LogbackListener implements ServletContextListener {
 		configurator.doConfigure(configUrl);
 	}
 
+	private void configureJsonAppender(ServletContext servletContext, LoggerContext context) {
+		String file = servletContext.getInitParameter(JSON_FILE);
+		if (file == null || file.isEmpty()) {
+			return;
+		}
+		RingBufferJsonAppender appender = new RingBufferJsonAppender();
+		appender.setContext(context);
+		appender.setName("JSON");
+		appender.setFileNamePattern(file);
+		String policy = servletContext.getInitParameter(JSON_POLICY);
+		if (policy != null && !policy.isEmpty()) {
+			appender.setPolicy(RingBufferJsonAppender.OverflowPolicy.valueOf(policy.trim()));
+		}
+		String capacity = servletContext.getInitParameter(JSON_CAPACITY);
+		if (capacity != null && !capacity.isEmpty()) {
+			appender.setCapacity(Integer.parseInt(capacity.trim()));
+		}
+		appender.start();
+		if (!appender.isStarted()) {
+			servletContext.log("Could not start JSON appender[" + file + "]");
+			return;
+		}
+		ch.qos.logback.classic.Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+		root.addAppender(appender);
+
+		//置き換えるアペンダーはrootから外すだけにする（他のアペンダーから参照されている場合があるため止めない）
+		String replaces = servletContext.getInitParameter(JSON_REPLACES);
+		if (replaces != null) {
+			for (String name : replaces.split(",")) {
+				if (!name.trim().isEmpty() && root.detachAppender(name.trim())) {
+					servletContext.log("detached appender[" + name.trim() + "] from root");
+				}
+			}
+		}
+		wrapAsync(servletContext, context, root);
+		servletContext.log("JSON appender[" + file + "][" + appender.getPolicy() + "] started");
+	}
+
+	//同期のアペンダー（コンソール等）を、rootでAsyncAppenderの後ろに付け替える
+	private void wrapAsync(ServletContext servletContext, LoggerContext context, ch.qos.logback.classic.Logger root) {
+		String wraps = servletContext.getInitParameter(ASYNC_WRAPS);
+		if (wraps == null) {
+			return;
+		}
+		for (String name : wraps.split(",")) {
+			Appender<ILoggingEvent> target = root.getAppender(name.trim());
+			if (target == null) {
+				continue;
+			}
+			AsyncAppender async = new AsyncAppender();
+			async.setContext(context);
+			async.setName("ASYNC_ROOT_" + target.getName());
+			async.addAppender(target);
+			async.start();
+			root.addAppender(async);
+			root.detachAppender(target);
+			servletContext.log("appender[" + target.getName() + "] is wrapped by AsyncAppender on root");
+		}
+	}
+
 	@Override
 	public void contextDestroyed(ServletContextEvent sce) {
 		LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
@@ -1,45 +1,170 @@
 package sample.util.listener;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Map;
 
+import javax.enterprise.inject.spi.CDI;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
 import javax.faces.event.PhaseEvent;
 import javax.faces.event.PhaseId;
 import javax.faces.event.PhaseListener;
+import javax.faces.render.ResponseStateManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import sample.util.JsonObjectDump;
+import sample.util.metrics.PhaseProfileStore;
+import sample.util.metrics.ServiceTime;
+import sample.util.metrics.ViewProfile;
 
+//フェイズごとの時間を画面ごとに計測します（PhaseProfileStoreに記録し、/admin/metrics で参照する）。
+//フェイズの時間のうち@Serviceの呼び出しの時間、描画後のコンポーネント数、ポストバックで送られたビューステートの大きさも記録します。
+//ビューステートをサーバーに保存する設定では、送られるのはIDのみのため、大きさは小さな値になります。
 public class MyPhaseListener implements PhaseListener {
 
     private static final long serialVersionUID = 1L;
     private static final Logger logger = LoggerFactory.getLogger(MyPhaseListener.class);
 
+    //計測するか
+    private static final boolean PROFILE = Boolean
+            .parseBoolean(System.getProperty("yourlibrary.phase.profile", "true"));
+
+    //リクエストの計測中の値（FacesContextの属性）
+    private static final String PROFILE_KEY = MyPhaseListener.class.getName() + ".profile";
+
+    private transient PhaseProfileStore store;
+
+    //1回のリクエストの計測中の値
+    private static final class RequestProfile {
+        final long[] start = new long[ViewProfile.PHASES.length];
+        final long[] serviceStart = new long[ViewProfile.PHASES.length];
+        final long[] wall = new long[ViewProfile.PHASES.length];
+        final long[] service = new long[ViewProfile.PHASES.length];
+        String viewId;
+        int viewStateBytes = -1;
+
+        RequestProfile() {
+            Arrays.fill(wall, -1);
+        }
+    }
+
     //前処理
     @Override
-    public void afterPhase(PhaseEvent event) {
-        logger.debug("[AFTER]" + event.getPhaseId());
+    public void beforePhase(PhaseEvent event) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("[BEFORE]{}", event.getPhaseId());
+            if (event.getPhaseId().equals(PhaseId.RESTORE_VIEW)) {
+                logParameters(event.getFacesContext());
+            }
+        }
+        if (!PROFILE) {
+            return;
+        }
+        FacesContext context = event.getFacesContext();
+        Map<Object, Object> attributes = context.getAttributes();
+        RequestProfile profile = (RequestProfile) attributes.get(PROFILE_KEY);
+        if (profile == null) {
+            profile = new RequestProfile();
+            attributes.put(PROFILE_KEY, profile);
+        }
+        int phase = event.getPhaseId().getOrdinal();
+        profile.serviceStart[phase] = ServiceTime.total();
+        profile.start[phase] = System.nanoTime();
     }
 
     //後処理
     @Override
-    public void beforePhase(PhaseEvent event) {
-        logger.debug("[BEFORE]" + event.getPhaseId());
+    public void afterPhase(PhaseEvent event) {
+        logger.debug("[AFTER]{}", event.getPhaseId());
+        if (!PROFILE) {
+            return;
+        }
+        long now = System.nanoTime();
+        FacesContext context = event.getFacesContext();
+        RequestProfile profile = (RequestProfile) context.getAttributes().get(PROFILE_KEY);
+        if (profile == null) {
+            return;
+        }
+        int phase = event.getPhaseId().getOrdinal();
+        profile.wall[phase] = now - profile.start[phase];
+        profile.service[phase] = ServiceTime.total() - profile.serviceStart[phase];
+
         if (event.getPhaseId().equals(PhaseId.RESTORE_VIEW)) {
-            Map<String, String> parameterMap = event.getFacesContext().getExternalContext()
-                    .getRequestParameterMap();
-            if (null == parameterMap) {
-                logger.debug("null");
-            } else {
-                for (Map.Entry<String, String> entry : parameterMap.entrySet()) {
-                    logger.debug("   <PARAMETER>" + "Key = " + entry.getKey() + ", Value = " + entry.getValue());
-                    if (JsonObjectDump.getJsonString(entry.getValue()) != null) {
-                        logger.debug(JsonObjectDump.getJsonString(entry.getValue()));
-                    }
-                }
+            //画面遷移しても、リクエストされた画面として記録する
+            profile.viewId = viewIdOf(context);
+            if (context.isPostback()) {
+                String viewState = context.getExternalContext().getRequestParameterMap()
+                        .get(ResponseStateManager.VIEW_STATE_PARAM);
+                profile.viewStateBytes = viewState == null ? -1 : viewState.length();
             }
         }
+        //描画の後、またはリダイレクト等で応答が完了した時に記録する
+        boolean rendered = event.getPhaseId().equals(PhaseId.RENDER_RESPONSE);
+        if (rendered || context.getResponseComplete()) {
+            context.getAttributes().remove(PROFILE_KEY);
+            record(profile, rendered ? countComponents(context.getViewRoot()) : -1, context);
+        }
+    }
+
+    private void record(RequestProfile profile, int components, FacesContext context) {
+        PhaseProfileStore s = store();
+        if (s == null) {
+            return;
+        }
+        String viewId = profile.viewId != null ? profile.viewId : viewIdOf(context);
+        s.forView(viewId).record(profile.wall, profile.service, components, profile.viewStateBytes);
+    }
+
+    private PhaseProfileStore store() {
+        if (store == null) {
+            try {
+                store = CDI.current().select(PhaseProfileStore.class).get();
+            } catch (IllegalStateException e) {
+                //CDIが使えない場合は記録しない
+                return null;
+            }
+        }
+        return store;
+    }
+
+    private static String viewIdOf(FacesContext context) {
+        UIViewRoot root = context.getViewRoot();
+        return root == null ? null : root.getViewId();
+    }
+
+    //コンポーネントの数（ファセット・子を含む）
+    static int countComponents(UIComponent root) {
+        if (root == null) {
+            return -1;
+        }
+        int count = 0;
+        Deque<UIComponent> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            UIComponent component = stack.pop();
+            count++;
+            for (Iterator<UIComponent> it = component.getFacetsAndChildren(); it.hasNext();) {
+                stack.push(it.next());
+            }
+        }
+        return count;
+    }
+
+    //リクエストパラメータ（文字列のためJSONにはしない）
+    private static void logParameters(FacesContext context) {
+        Map<String, String> parameterMap = context.getExternalContext().getRequestParameterMap();
+        if (null == parameterMap) {
+            logger.debug("null");
+            return;
+        }
+        for (Map.Entry<String, String> entry : parameterMap.entrySet()) {
+            logger.debug("   <PARAMETER>Key = {}, Value = {}", entry.getKey(), entry.getValue());
+        }
     }
 
     //対象のフェイズIDを返す。ここでは全てのフェイズを指定。
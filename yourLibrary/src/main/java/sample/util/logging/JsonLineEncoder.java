@@ -0,0 +1,207 @@
+package sample.util.logging;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+
+//ログのイベントを1行のJSON（UTF-8）にします。
+//{"ts":"2020-08-13T10:00:00.123+09:00","level":"INFO","thread":"...","logger":"...","message":"...",
+// "mdc":{"sessionId":"...","userId":"..."},"exception":"..."}
+//出力先のバイト列は使い回すため、1つのスレッド（RingBufferJsonAppenderの書き込みスレッド）だけで使います。
+public class JsonLineEncoder {
+
+    private static final DateTimeFormatter SECOND = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    //大きなメッセージで広げたバッファは、次のイベントで元に戻す
+    private static final int INITIAL_SIZE = 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private final ZoneId zone;
+
+    private byte[] buf = new byte[INITIAL_SIZE];
+
+    private int count;
+
+    //同じ秒の日時・タイムゾーンの文字列は使い回す
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedSecondText;
+    private String cachedOffset;
+
+    public JsonLineEncoder() {
+        this(ZoneId.systemDefault());
+    }
+
+    public JsonLineEncoder(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int length() {
+        return count;
+    }
+
+    public void encode(ILoggingEvent event) {
+        reset();
+        append("{\"ts\":\"");
+        appendTimestamp(event.getTimeStamp());
+        append("\",\"level\":\"");
+        append(event.getLevel().toString());
+        append("\",\"thread\":");
+        appendString(event.getThreadName());
+        append(",\"logger\":");
+        appendString(event.getLoggerName());
+        append(",\"message\":");
+        appendString(event.getFormattedMessage());
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null && !mdc.isEmpty()) {
+            append(",\"mdc\":{");
+            boolean first = true;
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                if (!first) {
+                    appendByte(',');
+                }
+                first = false;
+                appendString(entry.getKey());
+                appendByte(':');
+                appendString(entry.getValue());
+            }
+            appendByte('}');
+        }
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            append(",\"exception\":");
+            appendString(ThrowableProxyUtil.asString(throwable));
+        }
+        append("}\n");
+    }
+
+    //イベントを出力できなかった件数の通知
+    public void encodeDropped(long timeStamp, String loggerName, long dropped, String reason) {
+        reset();
+        append("{\"ts\":\"");
+        appendTimestamp(timeStamp);
+        append("\",\"level\":\"WARN\",\"thread\":");
+        appendString(Thread.currentThread().getName());
+        append(",\"logger\":");
+        appendString(loggerName);
+        append(",\"message\":");
+        appendString(dropped + " events dropped (" + reason + ")");
+        append("}\n");
+    }
+
+    private void reset() {
+        count = 0;
+        if (buf.length > MAX_RETAINED_SIZE) {
+            buf = new byte[INITIAL_SIZE];
+        }
+    }
+
+    private void appendTimestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != cachedSecond) {
+            ZonedDateTime time = Instant.ofEpochSecond(second).atZone(zone);
+            cachedSecondText = SECOND.format(time);
+            String offset = time.getOffset().getId();
+            cachedOffset = "Z".equals(offset) ? "+00:00" : offset;
+            cachedSecond = second;
+        }
+        append(cachedSecondText);
+        int ms = (int) Math.floorMod(millis, 1000);
+        appendByte('.');
+        appendByte('0' + ms / 100);
+        appendByte('0' + ms / 10 % 10);
+        appendByte('0' + ms % 10);
+        append(cachedOffset);
+    }
+
+    //ASCIIのみの固定の文字列
+    private void append(String ascii) {
+        int n = ascii.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[count++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void appendByte(int b) {
+        ensure(1);
+        buf[count++] = (byte) b;
+    }
+
+    //JSONの文字列（エスケープしてUTF-8にする）
+    void appendString(String s) {
+        if (s == null) {
+            append("null");
+            return;
+        }
+        int n = s.length();
+        //最大で1文字6バイト（\\uXXXX）
+        ensure(n * 6 + 2);
+        byte[] b = buf;
+        int p = count;
+        b[p++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    b[p++] = '\\';
+                    b[p++] = (byte) c;
+                } else if (c >= 0x20) {
+                    b[p++] = (byte) c;
+                } else if (c == '\n') {
+                    b[p++] = '\\';
+                    b[p++] = 'n';
+                } else if (c == '\r') {
+                    b[p++] = '\\';
+                    b[p++] = 'r';
+                } else if (c == '\t') {
+                    b[p++] = '\\';
+                    b[p++] = 't';
+                } else {
+                    b[p++] = '\\';
+                    b[p++] = 'u';
+                    b[p++] = '0';
+                    b[p++] = '0';
+                    b[p++] = HEX[c >> 4];
+                    b[p++] = HEX[c & 0xF];
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | c >> 6);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xF0 | cp >> 18);
+                b[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                b[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                //対になっていないサロゲートは出力できない
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xE0 | c >> 12);
+                b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        b[p++] = '"';
+        count = p;
+    }
+
+    private void ensure(int more) {
+        if (count + more > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + more));
+        }
+    }
+}
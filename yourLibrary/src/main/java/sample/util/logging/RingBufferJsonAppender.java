@@ -0,0 +1,376 @@
+package sample.util.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+
+//ログをJSONの行にしてファイルに書き出すアペンダー。
+//ログを出すスレッドは、あらかじめ確保したリングバッファにイベントを置くだけで、ロックは使いません。
+//1つの書き込みスレッドがJSONにし、使い回すバッファにまとめてFileChannelで書き出します。
+//バッファが混んできた（highWaterPercent以上）・一杯になった時の動作はpolicyで指定します。
+// BLOCK            : 一杯の時は空くまで待つ
+// DROP_DEBUG_FIRST : 混んできたらDEBUG以下を捨てる。INFO以上は一杯の時に待つ
+// SAMPLE           : 混んできたらWARN未満をsampleEvery件に1件だけ残す（一杯なら捨てる）。WARN以上は一杯の時に待つ
+//捨てた件数は、書き込みスレッドがWARNの行として出力します。
+//書き込みスレッドは、空いている時は待つ時間を延ばしながら（上限MAX_IDLE_PARK_NANOS）待ち、
+//ログを出すスレッドは、待っている書き込みスレッドにイベントを置いた時だけ起こします。
+//fileNamePatternの %d は日付（yyyy-MM-dd）に置き換え、日付が変わったら次のファイルに書きます。
+public class RingBufferJsonAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP_DEBUG_FIRST, SAMPLE
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private String fileNamePattern;
+
+    private int capacity = 8192;
+
+    private OverflowPolicy policy = OverflowPolicy.DROP_DEBUG_FIRST;
+
+    private int sampleEvery = 10;
+
+    private int highWaterPercent = 75;
+
+    private int batchBytes = 256 * 1024;
+
+    //リングバッファの要素。sequenceが「番号 + 1」になったら書き込み済み
+    private static final class Slot {
+        volatile long sequence;
+        ILoggingEvent event;
+    }
+
+    private Slot[] ring;
+
+    private int mask;
+
+    private long highWater;
+
+    //次に置く番号（ログを出すスレッドが進める）
+    private final AtomicLong tail = new AtomicLong();
+
+    //次に取り出す番号（書き込みスレッドだけが進める）
+    private final AtomicLong head = new AtomicLong();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private volatile boolean running;
+
+    //書き込みスレッドが空のバッファを待っている（ログを出すスレッドが起こす）
+    private volatile boolean writerParked;
+
+    private Thread worker;
+
+    //以下は書き込みスレッドだけが使う
+    private final JsonLineEncoder encoder = new JsonLineEncoder();
+
+    private ByteBuffer batch;
+
+    private FileChannel channel;
+
+    private LocalDate channelDate;
+
+    private long reportedDrops;
+
+    @Override
+    public void start() {
+        if (fileNamePattern == null) {
+            addError("fileNamePattern is not set for appender [" + name + "]");
+            return;
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        ring = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+        }
+        mask = size - 1;
+        highWater = Math.max(1, size * (long) highWaterPercent / 100);
+        batch = ByteBuffer.allocate(batchBytes);
+        running = true;
+        worker = new Thread(this::drain, "RingBufferJsonAppender-" + name);
+        worker.setDaemon(true);
+        worker.start();
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        int level = event.getLevel().toInt();
+        boolean prepared = false;
+        long sequence;
+        int idle = 0;
+        while (true) {
+            sequence = tail.get();
+            long used = sequence - head.get();
+            if (used >= highWater) {
+                if (!admitWhenBusy(level)) {
+                    dropped.increment();
+                    return;
+                }
+                if (used > mask) {
+                    //一杯
+                    if (mustDropWhenFull(level) || !running) {
+                        dropped.increment();
+                        return;
+                    }
+                    idle = backoff(idle);
+                    continue;
+                }
+            }
+            if (!prepared) {
+                //メッセージの整形・MDCの複写は、番号を取る前に済ませる（取ってから置くまでを短くする）
+                event.prepareForDeferredProcessing();
+                prepared = true;
+                continue;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+        Slot slot = ring[(int) sequence & mask];
+        slot.event = event;
+        slot.sequence = sequence + 1;
+        if (writerParked) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    //混んでいる時に受け付けるか
+    private boolean admitWhenBusy(int level) {
+        switch (policy) {
+        case DROP_DEBUG_FIRST:
+            return level >= Level.INFO_INT;
+        case SAMPLE:
+            return level >= Level.WARN_INT || sampleCounter.getAndIncrement() % sampleEvery == 0;
+        default:
+            return true;
+        }
+    }
+
+    //一杯の時に待たずに捨てるか
+    private boolean mustDropWhenFull(int level) {
+        return policy == OverflowPolicy.SAMPLE && level < Level.WARN_INT;
+    }
+
+    private static int backoff(int idle) {
+        if (idle < 10) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return idle < Integer.MAX_VALUE ? idle + 1 : idle;
+    }
+
+    //書き込みスレッド
+    private void drain() {
+        long next = head.get();
+        int idle = 0;
+        while (running || next != tail.get()) {
+            int taken = 0;
+            Slot slot;
+            while ((slot = ring[(int) next & mask]).sequence == next + 1) {
+                ILoggingEvent event = slot.event;
+                slot.event = null;
+                head.lazySet(++next);
+                taken++;
+                try {
+                    encoder.encode(event);
+                    write(encoder.buffer(), encoder.length());
+                } catch (RuntimeException e) {
+                    addError("failed to encode event", e);
+                }
+            }
+            reportDrops();
+            if (taken > 0) {
+                flush();
+                idle = 0;
+            } else if (!running && next != tail.get()) {
+                //番号を取ったスレッドが置くのを待つ（停止中）
+                idle = backoff(idle);
+                if (idle > 10_000) {
+                    break;
+                }
+            } else {
+                idle = awaitEvents(next, idle);
+            }
+        }
+        reportDrops();
+        flush();
+        closeChannel();
+    }
+
+    //空の時に待つ。置かれたら起こされるので、待つ時間は上限まで倍にしていく
+    //（上限があるのは、捨てた件数の出力・停止の確認のため）
+    private int awaitEvents(long next, int idle) {
+        if (idle < 10) {
+            Thread.yield();
+            return idle + 1;
+        }
+        //待つことを知らせてから、もう一度確かめる（その間に置かれたイベントを見落とさない）
+        writerParked = true;
+        if (running && ring[(int) next & mask].sequence != next + 1) {
+            LockSupport.parkNanos(Math.min(MAX_IDLE_PARK_NANOS, IDLE_PARK_NANOS << Math.min(idle - 10, 16)));
+        }
+        writerParked = false;
+        return idle < Integer.MAX_VALUE ? idle + 1 : idle;
+    }
+
+    private void reportDrops() {
+        long total = dropped.sum();
+        if (total != reportedDrops) {
+            encoder.encodeDropped(System.currentTimeMillis(), getClass().getName(), total - reportedDrops,
+                    policy.name());
+            reportedDrops = total;
+            write(encoder.buffer(), encoder.length());
+        }
+    }
+
+    private void write(byte[] bytes, int length) {
+        if (length > batch.remaining()) {
+            flush();
+        }
+        if (length > batch.capacity()) {
+            //バッファより大きい行は直接書く
+            writeFully(ByteBuffer.wrap(bytes, 0, length));
+            return;
+        }
+        batch.put(bytes, 0, length);
+    }
+
+    private void flush() {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        writeFully(batch);
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) {
+        try {
+            FileChannel ch = channel();
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+        } catch (IOException e) {
+            addError("failed to write log file", e);
+            closeChannel();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        LocalDate today = LocalDate.now();
+        if (channel != null && (channelDate.equals(today) || !fileNamePattern.contains("%d"))) {
+            return channel;
+        }
+        closeChannel();
+        Path path = Paths.get(fileNamePattern.replace("%d", today.toString()));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        channelDate = today;
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            addError("failed to close log file", e);
+        }
+        channel = null;
+    }
+
+    //捨てたイベントの数
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public String getFileNamePattern() {
+        return fileNamePattern;
+    }
+
+    public void setFileNamePattern(String fileNamePattern) {
+        this.fileNamePattern = fileNamePattern;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(OverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    public int getHighWaterPercent() {
+        return highWaterPercent;
+    }
+
+    public void setHighWaterPercent(int highWaterPercent) {
+        this.highWaterPercent = Math.min(100, Math.max(1, highWaterPercent));
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(int batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+}
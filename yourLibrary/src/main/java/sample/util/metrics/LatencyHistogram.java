@@ -0,0 +1,129 @@
+package sample.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//応答時間（ナノ秒）のヒストグラム（HdrHistogramと同じ対数・線形の階級）。
+//2のべき乗ごとの区間をさらに8つに分けるため、値の誤差は12.5%以内です。
+//記録はスレッドごとに分けた領域（stripe）に加算するだけで、ロックは使いません。集計は読む時に行います。
+public class LatencyHistogram {
+
+    //2のべき乗の区間を分ける数（2^SUB_BITS）
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    //記録できる最大の指数。2^41ナノ秒（約36分）以上は最後の階級に入れる
+    private static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    //stripeの数（2のべき乗）
+    private static final int STRIPES = stripes();
+
+    //stripeの領域の大きさ。隣のstripeと同じキャッシュラインを使わないよう、階級の数の後に余白を置く
+    private static final int STRIDE = BUCKETS + 8;
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIDE);
+
+    private static int stripes() {
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        return Math.min(n, 64);
+    }
+
+    //値の階級
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    //階級に入る最大の値
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long lower = (long) (SUB_COUNT + bucket % SUB_COUNT) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.getAndIncrement(stripe * STRIDE + bucketOf(nanos));
+    }
+
+    //現在の階級ごとの件数（記録中の値は含まれない場合がある）
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        for (int s = 0; s < STRIPES; s++) {
+            int base = s * STRIDE;
+            for (int b = 0; b < BUCKETS; b++) {
+                merged[b] += counts.get(base + b);
+            }
+        }
+        return new Snapshot(merged);
+    }
+
+    //ある時点の件数。差を取ると、その間の分布になる
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKETS]);
+
+        private final long[] counts;
+
+        private final long total;
+
+        Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            for (long c : counts) {
+                sum += c;
+            }
+            this.total = sum;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        //q（0〜1）の分位点のナノ秒。記録がなければ0
+        public long percentile(double q) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    return upperBoundOf(b);
+                }
+            }
+            return upperBoundOf(counts.length - 1);
+        }
+
+        public long max() {
+            for (int b = counts.length - 1; b >= 0; b--) {
+                if (counts[b] > 0) {
+                    return upperBoundOf(b);
+                }
+            }
+            return 0;
+        }
+
+        //このスナップショットからearlierを引いたもの
+        public Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[counts.length];
+            for (int b = 0; b < diff.length; b++) {
+                diff[b] = Math.max(0, counts[b] - earlier.counts[b]);
+            }
+            return new Snapshot(diff);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package sample.util.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//1つのメソッド（または画面）の呼び出し回数・例外の回数・応答時間。
+//直近の値は、一定間隔（rotate）で取ったスナップショットのうち最も古いものとの差で求めます。
+public class LatencyMetrics implements LatencyMetricsMXBean {
+
+    //JMXは属性ごとに読むため、集計結果をこの間は使い回す
+    private static final long VIEW_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final long windowSeconds;
+
+    //rotateごとのスナップショット（リングバッファ）。oldestが最も古い
+    private final Mark[] marks;
+
+    private int oldest;
+
+    private volatile View view;
+
+    //ある時点の値
+    private static final class Mark {
+        final long nanoTime;
+        final LatencyHistogram.Snapshot latency;
+        final long errors;
+
+        Mark(long nanoTime, LatencyHistogram.Snapshot latency, long errors) {
+            this.nanoTime = nanoTime;
+            this.latency = latency;
+            this.errors = errors;
+        }
+    }
+
+    //集計結果
+    private static final class View {
+        final long createdAt;
+        final LatencyHistogram.Snapshot total;
+        final long errors;
+        final LatencyHistogram.Snapshot recent;
+        final long recentErrors;
+        final double recentSeconds;
+
+        View(long createdAt, LatencyHistogram.Snapshot total, long errors, Mark since) {
+            this.createdAt = createdAt;
+            this.total = total;
+            this.errors = errors;
+            this.recent = total.minus(since.latency);
+            this.recentErrors = errors - since.errors;
+            this.recentSeconds = (createdAt - since.nanoTime) / 1e9;
+        }
+    }
+
+    public LatencyMetrics(String name, long windowSeconds, int slots) {
+        this.name = name;
+        this.windowSeconds = windowSeconds;
+        this.marks = new Mark[slots];
+        long now = System.nanoTime();
+        for (int i = 0; i < slots; i++) {
+            marks[i] = new Mark(now, LatencyHistogram.Snapshot.EMPTY, 0);
+        }
+    }
+
+    public void record(long nanos, boolean failed) {
+        histogram.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    //最も古いスナップショットを現在の値で置き換える。windowSeconds / slots 秒ごとに呼ぶ
+    synchronized void rotate() {
+        marks[oldest] = new Mark(System.nanoTime(), histogram.snapshot(), errors.sum());
+        oldest = (oldest + 1) % marks.length;
+    }
+
+    private View view() {
+        long now = System.nanoTime();
+        View current = view;
+        if (current == null || now - current.createdAt > VIEW_TTL_NANOS) {
+            Mark since;
+            synchronized (this) {
+                since = marks[oldest];
+            }
+            current = new View(now, histogram.snapshot(), errors.sum(), since);
+            view = current;
+        }
+        return current;
+    }
+
+    //集計結果を使い回さずに読み直す
+    void refresh() {
+        view = null;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCallCount() {
+        return view().total.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return view().errors;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return micros(view().total.percentile(0.5));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return micros(view().total.percentile(0.99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return micros(view().total.percentile(0.999));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return micros(view().total.max());
+    }
+
+    @Override
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    @Override
+    public long getRecentCallCount() {
+        return view().recent.getCount();
+    }
+
+    @Override
+    public long getRecentErrorCount() {
+        return view().recentErrors;
+    }
+
+    @Override
+    public double getRecentCallsPerSecond() {
+        View v = view();
+        return v.recentSeconds <= 0 ? 0 : v.recent.getCount() / v.recentSeconds;
+    }
+
+    @Override
+    public long getRecentP50Micros() {
+        return micros(view().recent.percentile(0.5));
+    }
+
+    @Override
+    public long getRecentP99Micros() {
+        return micros(view().recent.percentile(0.99));
+    }
+
+    @Override
+    public long getRecentP999Micros() {
+        return micros(view().recent.percentile(0.999));
+    }
+
+    @Override
+    public long getRecentMaxMicros() {
+        return micros(view().recent.max());
+    }
+
+}
@@ -0,0 +1,37 @@
+package sample.util.metrics;
+
+//メソッド・画面ごとの呼び出し回数・応答時間。JConsole等から参照します。
+//Recentが付くものは直近のwindowSeconds秒の値です。
+public interface LatencyMetricsMXBean {
+
+    String getName();
+
+    long getCallCount();
+
+    long getErrorCount();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+
+    long getWindowSeconds();
+
+    long getRecentCallCount();
+
+    long getRecentErrorCount();
+
+    double getRecentCallsPerSecond();
+
+    long getRecentP50Micros();
+
+    long getRecentP99Micros();
+
+    long getRecentP999Micros();
+
+    long getRecentMaxMicros();
+
+}
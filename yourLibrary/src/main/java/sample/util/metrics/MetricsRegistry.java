@@ -0,0 +1,200 @@
+package sample.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//メソッド・画面ごとの計測値（LatencyMetrics）を保持し、JMXに登録します。
+//直近の値のためのスナップショットは、windowSeconds / slots 秒ごとに取ります。
+//logIntervalSeconds秒ごとに、直近に呼ばれたものの集計をログに出します（0なら出さない）。
+@ApplicationScoped
+public class MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final long WINDOW_SECONDS = Long.getLong("yourlibrary.metrics.windowSeconds", 60);
+
+    private static final int SLOTS = Integer.getInteger("yourlibrary.metrics.slots", 6);
+
+    private static final long LOG_INTERVAL_SECONDS = Long.getLong("yourlibrary.metrics.logIntervalSeconds", 60);
+
+    //画面の計測値の数の上限。超えたものはまとめる（URLの種類で際限なく増えないように）
+    static final int MAX_REQUEST_KEYS = Integer.getInteger("yourlibrary.metrics.maxRequestKeys", 256);
+
+    static final String OTHER_REQUESTS = "(other)";
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    private final long windowSeconds;
+
+    private final int slots;
+
+    private final ConcurrentMap<Method, LatencyMetrics> metrics = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LatencyMetrics> requests = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<LatencyMetrics, ObjectName> objectNames = new ConcurrentHashMap<>();
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    public MetricsRegistry() {
+        this(WINDOW_SECONDS, SLOTS);
+    }
+
+    public MetricsRegistry(long windowSeconds, int slots) {
+        this.windowSeconds = windowSeconds;
+        this.slots = slots;
+    }
+
+    @PostConstruct
+    public void start() {
+        ThreadFactory factory = threadFactory != null ? threadFactory : Executors.defaultThreadFactory();
+        scheduler = new ScheduledThreadPoolExecutor(1, factory);
+        long periodMillis = Math.max(1, TimeUnit.SECONDS.toMillis(windowSeconds) / slots);
+        scheduler.scheduleAtFixedRate(this::rotate, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        if (LOG_INTERVAL_SECONDS > 0) {
+            scheduler.scheduleAtFixedRate(this::logSummary, LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (ObjectName on : objectNames.values()) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(on);
+            } catch (JMException e) {
+                logger.warn("failed to unregister metrics mbean: " + on, e);
+            }
+        }
+        objectNames.clear();
+    }
+
+    //メソッドの計測値。初めての場合は作成してJMXに登録する
+    public LatencyMetrics forMethod(Class<?> beanClass, Method method) {
+        LatencyMetrics m = metrics.get(method);
+        if (m == null) {
+            m = metrics.computeIfAbsent(method,
+                    key -> new LatencyMetrics(nameOf(beanClass, key), windowSeconds, slots));
+            register(m, "type=MethodMetrics,class=" + beanClass.getSimpleName() + ",name="
+                    + ObjectName.quote(m.getName().substring(m.getName().indexOf('#') + 1)));
+        }
+        return m;
+    }
+
+    //画面（種類と画面ID。例 "AJAX /view/movie/searchMovie.xhtml"）の計測値。初めての場合は作成してJMXに登録する
+    public LatencyMetrics forRequest(String key) {
+        LatencyMetrics m = requests.get(key);
+        if (m == null) {
+            String name = requests.size() >= MAX_REQUEST_KEYS ? OTHER_REQUESTS : key;
+            m = requests.computeIfAbsent(name, k -> new LatencyMetrics(k, windowSeconds, slots));
+            register(m, "type=RequestMetrics,name=" + ObjectName.quote(m.getName()));
+        }
+        return m;
+    }
+
+    //メソッドの計測値（名前順）
+    public List<LatencyMetrics> getMethods() {
+        return sorted(metrics.values());
+    }
+
+    //画面の計測値（名前順）
+    public List<LatencyMetrics> getRequests() {
+        return sorted(requests.values());
+    }
+
+    private static List<LatencyMetrics> sorted(Iterable<LatencyMetrics> values) {
+        List<LatencyMetrics> list = new ArrayList<>();
+        values.forEach(list::add);
+        list.sort(Comparator.comparing(LatencyMetrics::getName));
+        return list;
+    }
+
+    void rotate() {
+        for (LatencyMetrics m : metrics.values()) {
+            m.rotate();
+        }
+        for (LatencyMetrics m : requests.values()) {
+            m.rotate();
+        }
+    }
+
+    //直近に呼ばれた画面・メソッドを1行ずつ出力する
+    void logSummary() {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        for (LatencyMetrics m : getRequests()) {
+            logSummary("request", m);
+        }
+        for (LatencyMetrics m : getMethods()) {
+            logSummary("method", m);
+        }
+    }
+
+    private static void logSummary(String kind, LatencyMetrics m) {
+        if (m.getRecentCallCount() == 0) {
+            return;
+        }
+        logger.info("{} {} calls={} errors={} rate={}/s p50={}us p99={}us p999={}us max={}us", kind,
+                m.getName(), m.getRecentCallCount(), m.getRecentErrorCount(),
+                String.format("%.1f", m.getRecentCallsPerSecond()), m.getRecentP50Micros(),
+                m.getRecentP99Micros(), m.getRecentP999Micros(), m.getRecentMaxMicros());
+    }
+
+    //クラス名#メソッド名(引数の型)
+    static String nameOf(Class<?> beanClass, Method method) {
+        StringBuilder sb = new StringBuilder(beanClass.getName()).append('#').append(method.getName()).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            sb.append(i == 0 ? "" : ",").append(types[i].getSimpleName());
+        }
+        return sb.append(')').toString();
+    }
+
+    private void register(LatencyMetrics m, String properties) {
+        if (objectNames.containsKey(m)) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("sample:" + properties);
+            synchronized (this) {
+                if (objectNames.containsKey(m)) {
+                    return;
+                }
+                if (server.isRegistered(on)) {
+                    server.unregisterMBean(on);
+                }
+                server.registerMBean(m, on);
+                objectNames.put(m, on);
+            }
+        } catch (JMException e) {
+            logger.warn("failed to register metrics mbean: " + m.getName(), e);
+        }
+    }
+}
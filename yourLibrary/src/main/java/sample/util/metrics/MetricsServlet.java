@@ -0,0 +1,94 @@
+package sample.util.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * 画面・メソッドごとの計測値、画面ごとのフェイズの計測値、SQLごとの計測値の一覧をJSONで返します（/admin/metrics）。
+ * 計測値は業務の情報を含まないが、既定ではサーバー自身（ループバック）からのアクセスのみ受け付けます。
+ * 他のホストから参照する場合は -Dyourlibrary.metrics.allowRemote=true を指定してください。
+ */
+@WebServlet(urlPatterns = { "/admin/metrics" })
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final boolean ALLOW_REMOTE = Boolean.getBoolean("yourlibrary.metrics.allowRemote");
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+    @Inject
+    private MetricsRegistry registry;
+
+    @Inject
+    private PhaseProfileStore phaseProfiles;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!ALLOW_REMOTE && !isLoopback(request.getRemoteAddr())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("requests", summaries(registry.getRequests()));
+        body.put("methods", summaries(registry.getMethods()));
+        body.put("views", phaseProfiles.summaries());
+        body.put("sql", SqlProfiler.summaries());
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        WRITER.writeValue(response.getWriter(), body);
+    }
+
+    static boolean isLoopback(String address) {
+        try {
+            //IPアドレスの文字列のため、名前解決は行われない
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    static List<Map<String, Object>> summaries(List<LatencyMetrics> metrics) {
+        List<Map<String, Object>> list = new ArrayList<>(metrics.size());
+        for (LatencyMetrics m : metrics) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("name", m.getName());
+            summary.put("calls", m.getCallCount());
+            summary.put("errors", m.getErrorCount());
+            summary.put("p50Micros", m.getP50Micros());
+            summary.put("p99Micros", m.getP99Micros());
+            summary.put("p999Micros", m.getP999Micros());
+            summary.put("maxMicros", m.getMaxMicros());
+            Map<String, Object> recent = new LinkedHashMap<>();
+            recent.put("windowSeconds", m.getWindowSeconds());
+            recent.put("calls", m.getRecentCallCount());
+            recent.put("errors", m.getRecentErrorCount());
+            recent.put("callsPerSecond", m.getRecentCallsPerSecond());
+            recent.put("p50Micros", m.getRecentP50Micros());
+            recent.put("p99Micros", m.getRecentP99Micros());
+            recent.put("p999Micros", m.getRecentP999Micros());
+            recent.put("maxMicros", m.getRecentMaxMicros());
+            summary.put("recent", recent);
+            list.add(summary);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,63 @@
+package sample.util.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+
+//画面ごとのフェイズの計測値（ViewProfile）。MyPhaseListenerが記録します。
+//画面の数が上限を超えたら、それ以降の画面はまとめて記録します（メモリを際限なく使わないように）。
+@ApplicationScoped
+public class PhaseProfileStore {
+
+    private static final int MAX_VIEWS = Integer.getInteger("yourlibrary.metrics.maxViews", 128);
+
+    static final String OTHER_VIEWS = "(other)";
+
+    private final int maxViews;
+
+    private final ConcurrentMap<String, ViewProfile> views = new ConcurrentHashMap<>();
+
+    public PhaseProfileStore() {
+        this(MAX_VIEWS);
+    }
+
+    public PhaseProfileStore(int maxViews) {
+        this.maxViews = maxViews;
+    }
+
+    public ViewProfile forView(String viewId) {
+        String key = viewId == null ? OTHER_VIEWS : viewId;
+        ViewProfile profile = views.get(key);
+        if (profile == null) {
+            if (views.size() >= maxViews) {
+                key = OTHER_VIEWS;
+            }
+            profile = views.computeIfAbsent(key, ViewProfile::new);
+        }
+        return profile;
+    }
+
+    //画面の名前順
+    public List<ViewProfile> getViews() {
+        List<ViewProfile> list = new ArrayList<>(views.values());
+        list.sort(Comparator.comparing(ViewProfile::getName));
+        return list;
+    }
+
+    public List<Map<String, Object>> summaries() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (ViewProfile profile : getViews()) {
+            list.add(profile.summary());
+        }
+        return list;
+    }
+
+    public void clear() {
+        views.clear();
+    }
+}
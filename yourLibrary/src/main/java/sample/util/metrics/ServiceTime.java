@@ -0,0 +1,32 @@
+package sample.util.metrics;
+
+//スレッドごとの@Serviceの呼び出しに掛かった時間の累計（ナノ秒）。
+//MetricsInterceptorが加算し、画面のフェイズの前後で差を取ると、そのフェイズ内のサービス（DB）の時間になります。
+//サービスから別のサービスを呼んだ場合は、外側の呼び出しの時間だけを加算します。
+public final class ServiceTime {
+
+    //[0] 累計, [1] 呼び出しの深さ
+    private static final ThreadLocal<long[]> CURRENT = ThreadLocal.withInitial(() -> new long[2]);
+
+    private ServiceTime() {
+    }
+
+    //呼び出しの開始。endに渡す値を返す
+    public static long[] begin() {
+        long[] current = CURRENT.get();
+        current[1]++;
+        return current;
+    }
+
+    //呼び出しの終了。最も外側の呼び出しであれば時間を加算する
+    public static void end(long[] current, long elapsedNanos) {
+        if (--current[1] == 0) {
+            current[0] += elapsedNanos;
+        }
+    }
+
+    //このスレッドの累計
+    public static long total() {
+        return CURRENT.get()[0];
+    }
+}
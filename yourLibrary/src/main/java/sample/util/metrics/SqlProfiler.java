@@ -0,0 +1,150 @@
+package sample.util.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.queries.Call;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//SQLの実行時間を計測します（persistence.xml の eclipselink.session-event-listener で登録）。
+//SQLごと（SqlFingerprint）に回数・時間・行数を集計し、slowMillisを超えたものだけをバインド値と共にログに出します。
+//JDBCのバッチ書き込みでまとめて送られるINSERT/UPDATEは、実際の送信がこのイベントの外で行われるため、時間は含まれません。
+public class SqlProfiler extends SessionEventAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlProfiler.class);
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS
+            .toNanos(Long.getLong("yourlibrary.sql.slowMillis", 200));
+
+    //SQLの種類の上限。超えたものはまとめる
+    private static final int MAX_STATEMENTS = Integer.getInteger("yourlibrary.sql.maxStatements", 512);
+
+    //ログに出すバインド値の長さの上限
+    private static final int MAX_BIND_LENGTH = 100;
+
+    static final String OTHER_STATEMENTS = "(other)";
+
+    private static final ConcurrentMap<String, SqlStats> STATS = new ConcurrentHashMap<>();
+
+    //SQLの中で実行されるSQL（入れ子）の深さの上限
+    private static final int MAX_DEPTH = 8;
+
+    //実行中のSQLと開始時刻。例外の場合はpostExecuteCallが呼ばれないため、残ったものは次に終わったSQLで捨てる
+    private static final ThreadLocal<Running> RUNNING = new ThreadLocal<>();
+
+    private static final class Running {
+        final Call call;
+        final long start;
+        final Running outer;
+        final int depth;
+
+        Running(Call call, long start, Running outer) {
+            this.call = call;
+            this.start = start;
+            //深すぎる場合は、例外で残ったものとみなして捨てる
+            this.outer = outer == null || outer.depth >= MAX_DEPTH ? null : outer;
+            this.depth = this.outer == null ? 1 : this.outer.depth + 1;
+        }
+    }
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        RUNNING.set(new Running(event.getCall(), System.nanoTime(), RUNNING.get()));
+    }
+
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        long now = System.nanoTime();
+        Running running = RUNNING.get();
+        while (running != null && running.call != event.getCall()) {
+            running = running.outer;
+        }
+        if (running == null) {
+            RUNNING.remove();
+            return;
+        }
+        if (running.outer == null) {
+            RUNNING.remove();
+        } else {
+            RUNNING.set(running.outer);
+        }
+        if (!(event.getCall() instanceof DatabaseCall)) {
+            return;
+        }
+        DatabaseCall call = (DatabaseCall) event.getCall();
+        long elapsed = now - running.start;
+        long rows = rowsOf(event.getResult());
+        String sql = call.getSQLString();
+        statsOf(SqlFingerprint.of(sql)).record(elapsed, rows);
+
+        if (elapsed >= SLOW_NANOS) {
+            logger.warn("slow sql {}ms rows={} : {} bind={}", TimeUnit.NANOSECONDS.toMillis(elapsed), rows, sql,
+                    bindValuesOf(call));
+        }
+    }
+
+    static SqlStats statsOf(String fingerprint) {
+        SqlStats stats = STATS.get(fingerprint);
+        if (stats == null) {
+            String key = STATS.size() >= MAX_STATEMENTS ? OTHER_STATEMENTS : fingerprint;
+            stats = STATS.computeIfAbsent(key, SqlStats::new);
+        }
+        return stats;
+    }
+
+    //取得した行数（SELECT）・更新した行数。分からない場合は-1
+    static long rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof Map) {
+            //1行
+            return 1;
+        }
+        return result == null ? 0 : -1;
+    }
+
+    private static List<String> bindValuesOf(DatabaseCall call) {
+        List<?> parameters = call.getParameters();
+        List<String> values = new ArrayList<>(parameters == null ? 0 : parameters.size());
+        if (parameters != null) {
+            for (Object parameter : parameters) {
+                String value = String.valueOf(parameter);
+                values.add(value.length() > MAX_BIND_LENGTH ? value.substring(0, MAX_BIND_LENGTH) + "..." : value);
+            }
+        }
+        return values;
+    }
+
+    //合計時間の長い順
+    public static List<SqlStats> getStatements() {
+        List<SqlStats> list = new ArrayList<>(STATS.values());
+        list.sort(Comparator.comparingLong(SqlStats::getTotalNanos).reversed());
+        return list;
+    }
+
+    public static List<Map<String, Object>> summaries() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (SqlStats stats : getStatements()) {
+            list.add(stats.summary());
+        }
+        return list;
+    }
+
+    public static void clear() {
+        STATS.clear();
+    }
+}
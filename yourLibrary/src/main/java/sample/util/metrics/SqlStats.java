@@ -0,0 +1,69 @@
+package sample.util.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//1つのSQL（SqlFingerprint）の実行回数・時間・行数。
+public class SqlStats {
+
+    private final String fingerprint;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder rows = new LongAdder();
+
+    public SqlStats(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    //rowsは取得・更新した行数（分からない場合は負の値）
+    public void record(long nanos, long rowCount) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    //JSON等に出力するための集計結果
+    public Map<String, Object> summary() {
+        long n = getCount();
+        long total = getTotalNanos();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("sql", fingerprint);
+        summary.put("count", n);
+        summary.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(total));
+        summary.put("meanMicros", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / n));
+        summary.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+        summary.put("rows", getRows());
+        return summary;
+    }
+}
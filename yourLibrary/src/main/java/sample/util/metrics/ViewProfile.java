@@ -0,0 +1,136 @@
+package sample.util.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//1つの画面のJSFのフェイズごとの時間・コンポーネント数・ビューステートの大きさ。
+//フェイズの時間のうち、@Serviceの呼び出しの時間（ServiceTime）を別に集計し、
+//画面が描画で遅いのか、サービス（DB）で遅いのかを判断できるようにします。
+public class ViewProfile {
+
+    //フェイズ（PhaseId#getOrdinal の順。0は使わない）
+    public static final String[] PHASES = { null, "RESTORE_VIEW", "APPLY_REQUEST_VALUES", "PROCESS_VALIDATIONS",
+            "UPDATE_MODEL_VALUES", "INVOKE_APPLICATION", "RENDER_RESPONSE" };
+
+    static final int RENDER_RESPONSE = 6;
+
+    //時間の半分以上を占めるものを、遅い原因とする
+    private static final double BOUND_SHARE = 0.5;
+
+    private final String name;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+
+    private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+
+    private final LongAdder[] serviceNanos = new LongAdder[PHASES.length];
+
+    private final LongAdder componentSum = new LongAdder();
+    private final LongAdder componentSamples = new LongAdder();
+    private final LongAccumulator componentMax = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder viewStateSum = new LongAdder();
+    private final LongAdder viewStateSamples = new LongAdder();
+    private final LongAccumulator viewStateMax = new LongAccumulator(Math::max, 0);
+
+    public ViewProfile(String name) {
+        this.name = name;
+        for (int i = 1; i < PHASES.length; i++) {
+            phases[i] = new LatencyHistogram();
+            phaseNanos[i] = new LongAdder();
+            serviceNanos[i] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //1回のリクエスト。時間の配列はフェイズの順で、実行しなかったフェイズは負の値。
+    //コンポーネント数・ビューステートのバイト数は、分からない場合は負の値
+    public void record(long[] wall, long[] service, int components, int viewStateBytes) {
+        long sum = 0;
+        for (int i = 1; i < PHASES.length; i++) {
+            if (wall[i] < 0) {
+                continue;
+            }
+            phases[i].record(wall[i]);
+            phaseNanos[i].add(wall[i]);
+            serviceNanos[i].add(service[i]);
+            sum += wall[i];
+        }
+        total.record(sum);
+        if (components >= 0) {
+            componentSum.add(components);
+            componentSamples.increment();
+            componentMax.accumulate(components);
+        }
+        if (viewStateBytes >= 0) {
+            viewStateSum.add(viewStateBytes);
+            viewStateSamples.increment();
+            viewStateMax.accumulate(viewStateBytes);
+        }
+    }
+
+    //描画（RENDER_RESPONSEのうちサービス以外）・サービスのどちらが時間の大半を占めるか
+    public String getBound() {
+        long all = 0;
+        long service = 0;
+        for (int i = 1; i < PHASES.length; i++) {
+            all += phaseNanos[i].sum();
+            service += serviceNanos[i].sum();
+        }
+        if (all == 0) {
+            return "-";
+        }
+        long render = phaseNanos[RENDER_RESPONSE].sum() - serviceNanos[RENDER_RESPONSE].sum();
+        if (service >= all * BOUND_SHARE) {
+            return "service";
+        }
+        return render >= all * BOUND_SHARE ? "render" : "mixed";
+    }
+
+    //JSON等に出力するための集計結果
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        LatencyHistogram.Snapshot totalSnapshot = total.snapshot();
+        long requests = totalSnapshot.getCount();
+        summary.put("name", name);
+        summary.put("requests", requests);
+        summary.put("bound", getBound());
+        summary.put("p50Micros", micros(totalSnapshot.percentile(0.5)));
+        summary.put("p99Micros", micros(totalSnapshot.percentile(0.99)));
+        Map<String, Object> phaseSummaries = new LinkedHashMap<>();
+        for (int i = 1; i < PHASES.length; i++) {
+            LatencyHistogram.Snapshot snapshot = phases[i].snapshot();
+            long count = snapshot.getCount();
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("count", count);
+            phase.put("meanMicros", micros(phaseNanos[i].sum() / count));
+            phase.put("serviceMeanMicros", micros(serviceNanos[i].sum() / count));
+            phase.put("p50Micros", micros(snapshot.percentile(0.5)));
+            phase.put("p99Micros", micros(snapshot.percentile(0.99)));
+            phaseSummaries.put(PHASES[i], phase);
+        }
+        summary.put("phases", phaseSummaries);
+        long components = componentSamples.sum();
+        summary.put("componentsMean", components == 0 ? 0 : componentSum.sum() / components);
+        summary.put("componentsMax", componentMax.get());
+        long viewStates = viewStateSamples.sum();
+        summary.put("viewStateBytesMean", viewStates == 0 ? 0 : viewStateSum.sum() / viewStates);
+        summary.put("viewStateBytesMax", viewStateMax.get());
+        return summary;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -1,7 +1,9 @@
 package sample.view;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.Path;
 
 import javax.annotation.PostConstruct;
 import javax.faces.view.ViewScoped;
@@ -15,8 +17,11 @@ import org.slf4j.LoggerFactory;
 
 import lombok.Getter;
 import lombok.Setter;
+import sample.entity.ImageStatus;
 import sample.entity.Movie;
 import sample.logic.MovieManager;
+import sample.logic.image.InvalidImageException;
+import sample.logic.image.PosterUploadService;
 import sample.util.interceptor.WithLog;
 import sample.view.dto.MovieScreenDto;
 import sample.view.util.ViewUtil;
@@ -58,6 +63,9 @@ public class EditMovieView implements Serializable {
     @Inject
     private MovieManager movieManager;
 
+    @Inject
+    private PosterUploadService posterUploadService;
+
     @PostConstruct
     public void init() {
         //		List<User> users = userManager.findAll();
@@ -66,17 +74,43 @@ public class EditMovieView implements Serializable {
 
     public void addMovie() {
 
-        File fileX = new File(file.getFileName());
-        logger.debug("Succesful: fileName={}, filePath={} is uploaded.", file.getFileName(), fileX.getPath());
+        //アップロードは一時ファイルに書き出しながら検証する（画像全体をヒープに読み込まない）
+        Path staged = null;
+        String fileName = null;
+        if (file != null && file.getSize() > 0) {
+            logger.debug("Succesful: fileName={}, size={} is uploaded.", file.getFileName(), file.getSize());
+            fileName = file.getFileName();
+            try (InputStream in = file.getInputStream()) {
+                staged = posterUploadService.stage(in);
+            } catch (InvalidImageException e) {
+                ViewUtil.AddErrorMessage("画像を登録できません", e.getMessage());
+                return;
+            } catch (IOException e) {
+                logger.warn("upload failed: fileName={}", fileName, e);
+                ViewUtil.AddErrorMessage("画像を登録できません", "アップロードに失敗しました");
+                return;
+            } finally {
+                //ビューと一緒にシリアライズされないよう、アップロードは保持しない
+                file = null;
+            }
+        }
 
         Movie movie = movieManager.createMovie(newMovieDto.getTitle());
         movie.setOutline(newMovieDto.getOutline());
-        movie.setImage(file.getFileName());
         movie.setIsLent(newMovieDto.isLend());
-        movie.setImageData(file.getContent());
+        if (staged != null) {
+            movie.setImage(fileName);
+            movie.setImageStatus(ImageStatus.PROCESSING);
+        }
         movie = movieManager.updateMovie(movie);
 
-        ViewUtil.AddMessage("映画の追加", "映画を追加しました。");
+        //保存・縮小版の作成はバックグラウンドで行い、終わると画像が表示される
+        if (staged != null) {
+            posterUploadService.process(movie.getId(), staged);
+            ViewUtil.AddMessage("映画の追加", "映画を追加しました。画像は処理中です。");
+        } else {
+            ViewUtil.AddMessage("映画の追加", "映画を追加しました。");
+        }
 
         //TODO  映画追加中の画面動画を追加
 
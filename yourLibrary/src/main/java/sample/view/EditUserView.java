@@ -1,6 +1,7 @@
 package sample.view;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -17,6 +18,7 @@ import lombok.Getter;
 import lombok.Setter;
 import sample.entity.User;
 import sample.logic.UserManager;
+import sample.logic.dto.UserRow;
 import sample.util.interceptor.WithLog;
 import sample.view.dto.IdEntityListDataModel;
 import sample.view.dto.UserScreenDto;
@@ -38,11 +40,11 @@ public class EditUserView implements Serializable {
 
 	@Getter
 	@Setter
-	private IdEntityListDataModel<User> usersListDto;// ユーザー表示一覧の全てユーザーの
+	private IdEntityListDataModel<UserRow> usersListDto;// ユーザー表示一覧の全てユーザーの
 
 	@Getter
 	@Setter
-	private List<User> selectedUsers;//選択分ユーザー
+	private List<UserRow> selectedUsers;//選択分ユーザー
 
 	private boolean isSelected;
 
@@ -55,8 +57,9 @@ public class EditUserView implements Serializable {
 
 	@PostConstruct
 	public void init() {
-		List<User> users = userManager.findAll();
-		usersListDto = new IdEntityListDataModel<User>(users);
+		//一覧の列だけを読み込む（パスワードは画面に持たない）
+		List<UserRow> users = userManager.findAllRows();
+		usersListDto = new IdEntityListDataModel<UserRow>(users);
 	}
 
 	public void addUser() {
@@ -70,7 +73,7 @@ public class EditUserView implements Serializable {
 		user.setEmail(newUserDto.getEmail());
 		user.setIsAdmin(newUserDto.isAdmin());
 		user = userManager.updateUser(user);
-		List<User> users = userManager.findAll();
+		List<UserRow> users = userManager.findAllRows();
 		usersListDto.setWrappedData(users);
 		ViewUtil.AddMessage("ユーザの追加", "ユーザーを追加しました。");
 		return;
@@ -81,10 +84,16 @@ public class EditUserView implements Serializable {
 			return null;
 		}
 
-		userManager.removeUser(selectedUsers);
-		List<User> users = userManager.findAll();
+		//選択したユーザをIDでまとめて削除する
+		List<Long> userIds = new ArrayList<>(selectedUsers.size());
+		for (UserRow user : selectedUsers) {
+			userIds.add(user.getId());
+		}
+		int removeCount = userManager.removeUsersById(userIds);
+		List<UserRow> users = userManager.findAllRows();
 		usersListDto.setWrappedData(users);
-		ViewUtil.AddMessage("ユーザの削除", selectedUsers.size() + "件のユーザを削除しました。");
+		selectedUsers = null;
+		ViewUtil.AddMessage("ユーザの削除", removeCount + "件のユーザを削除しました。");
 		isSelected = false;//削除後はボタンを無効にする。
 		return null;
 	}
@@ -93,19 +102,18 @@ public class EditUserView implements Serializable {
 		if (selectedUsers == null || selectedUsers.isEmpty()) {
 			return null;
 		}
-		User user = selectedUsers.get(0);
-		if (newPassword.equals(user.getPassword())) {
+		UserRow user = selectedUsers.get(0);
+		if (!userManager.updatePassword(user.getId(), newPassword)) {
 			ViewUtil.AddWarningMessage("パスワードの変更", "変更前後のパスワードが同じのため、パスワードの変更が行いません");
 			return null;//同じなら更新しない。
 		}
-		user.setPassword(newPassword);
-		userManager.updateUser(user);
+		newPassword = null;
 		ViewUtil.AddMessage("パスワードの変更", user.getName() + "のパスワードを変更しました。");
 		return null;
 	}
 
 	public void onRowEdit(RowEditEvent event) {
-		User user = (User) event.getObject();
+		UserRow user = (UserRow) event.getObject();
 		userManager.updateUser(user);
 		ViewUtil.AddMessage("ユーザの編集", "ユーザ " + user.getName() + " を更新しました。");
 	}
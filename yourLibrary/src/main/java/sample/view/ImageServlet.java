@@ -0,0 +1,236 @@
+package sample.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import sample.entity.Movie;
+import sample.logic.MovieManager;
+import sample.logic.cache.ImageByteCache;
+import sample.logic.image.ContentHash;
+import sample.logic.image.ImageFormat;
+import sample.logic.image.ImageStore;
+import sample.logic.image.ThumbnailSize;
+
+/**
+ * ポスター画像の配信。JSFを通さず、/image/{映画ID}/{画像のハッシュ}?size={表示サイズ} で返します。
+ * 画像ストア（ImageStore）にある画像はファイルから直接書き出します。
+ * URLは画像の内容ごとに変わるため、ブラウザには長期間キャッシュさせます。
+ * If-None-Matchが一致する場合はDBを読まずに304を返し、Rangeは単一範囲のみ対応します。
+ */
+@WebServlet(urlPatterns = { "/image/*" })
+public class ImageServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    //1年。内容が変わるとURLが変わるため、更新の確認は不要
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    @Inject
+    private MovieManager movieManager;
+
+    @Inject
+    private ImageStore imageStore;
+
+    @Inject
+    private ImageByteCache imageCache;
+
+    //JSFの画面から使うURL（コンテキストパスは含まない）
+    public static String urlOf(long movieId, String imageHash, int size) {
+        return "/image/" + movieId + "/" + imageHash + (size > 0 ? "?size=" + size : "");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        //パス: /{id}/{hash}
+        String[] path = request.getPathInfo() == null ? new String[0] : request.getPathInfo().split("/");
+        if (path.length != 3 || !ContentHash.isValid(path[2])) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long movieId;
+        int size;
+        try {
+            movieId = Long.parseLong(path[1]);
+            String sizeParam = request.getParameter("size");
+            size = sizeParam == null ? 0 : Integer.parseInt(sizeParam);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String hash = path[2];
+        String etag = "\"" + hash + "-" + size + "\"";
+
+        //URLが内容を表すため、ETagが一致すればDBを読まずに返せる
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", CACHE_CONTROL);
+            return;
+        }
+
+        //画像が差し替えられた古いURLは、現在のURLに転送する。
+        //一覧の画像は同時に要求されるため、キャッシュにない映画は他の要求とまとめて読み込む
+        Movie movie = movieManager.findByIds(Collections.singleton(movieId)).get(movieId);
+        if (movie == null || movie.getImageHash() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!hash.equals(movie.getImageHash())) {
+            response.sendRedirect(request.getContextPath() + urlOf(movieId, movie.getImageHash(), size));
+            return;
+        }
+
+        //画像ストアにあればファイルから送り、なければ（移行前の画像）DBから読む
+        ThumbnailSize variant = size > 0 ? ThumbnailSize.fitting(size) : null;
+        long length = imageStore.length(hash, variant);
+        if (length < 0 && variant != null) {
+            variant = null;
+            length = imageStore.length(hash, null);
+        }
+        ByteBuffer data = null;
+        String contentType;
+        if (length >= 0) {
+            contentType = contentTypeOf(head(hash, variant));
+        } else {
+            //DBの画像は共有の画像キャッシュ（ヒープ外）を通す
+            String key = ImageByteCache.keyOf(hash, size > 0 ? ThumbnailSize.fitting(size) : null);
+            data = imageCache.get(key, () -> size > 0
+                    ? movieManager.findImageData(movieId, size)
+                    : movieManager.findImageData(movieId));
+            if (data == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            length = data.remaining();
+            contentType = contentTypeOf(data.duplicate());
+        }
+
+        response.setContentType(contentType);
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        //If-Rangeが一致しない場合は全体を返す
+        String ifRange = request.getHeader("If-Range");
+        long[] range = ifRange == null || ifRange.equals(etag)
+                ? parseRange(request.getHeader("Range"), length)
+                : null;
+        if (range != null && range.length == 0) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        long start = 0;
+        long count = length;
+        if (range != null) {
+            start = range[0];
+            count = range[1] - range[0] + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+        }
+        response.setContentLengthLong(count);
+
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        if (data == null) {
+            //ファイルからtransferToで書き出す（ヒープに読み込まない）
+            imageStore.transferTo(hash, variant, start, count, out);
+        } else {
+            //キャッシュのバッファから範囲を書き出す
+            data.position((int) start).limit((int) (start + count));
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        }
+    }
+
+    //形式の判定に使う先頭のバイト列
+    private byte[] head(String hash, ThumbnailSize variant) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(ImageFormat.HEAD_SIZE);
+        imageStore.transferTo(hash, variant, 0, ImageFormat.HEAD_SIZE, Channels.newChannel(head));
+        return head.toByteArray();
+    }
+
+    //If-None-Match: "a", "b" / *
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            //圧縮時にW/を付けるサーバがあるため、弱い比較で判定する
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Range: bytes=start-end / start- / -suffix
+    //対応しない・解釈できない・無効な場合はnull（全体を返す）、範囲外の場合は空の配列（416）
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                if (dash == spec.length() - 1) {
+                    end = length - 1;
+                } else {
+                    end = Long.parseLong(spec.substring(dash + 1));
+                    if (start > end) {
+                        //終了位置が開始位置より前の指定は無効なので、ヘッダを無視する（RFC 7233 2.1）
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            }
+            if (start >= length) {
+                return new long[0];
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String contentTypeOf(ByteBuffer data) {
+        byte[] head = new byte[Math.min(ImageFormat.HEAD_SIZE, data.remaining())];
+        data.get(head);
+        return contentTypeOf(head);
+    }
+
+    static String contentTypeOf(byte[] data) {
+        return ImageFormat.contentTypeOf(data);
+    }
+
+}
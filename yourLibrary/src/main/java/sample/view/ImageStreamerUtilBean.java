@@ -1,11 +1,16 @@
 package sample.view;
 
+import java.util.Collections;
+import java.util.function.Supplier;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import sample.entity.Movie;
 import sample.logic.MovieManager;
+import sample.logic.cache.ImageByteCache;
+import sample.logic.image.ThumbnailSize;
 
 @Named
 @ApplicationScoped
@@ -14,8 +19,30 @@ public class ImageStreamerUtilBean {
     @Inject
     private MovieManager movieManager;
 
+    //全セッション共有の画像キャッシュ（ヒープ外）
+    @Inject
+    private ImageByteCache imageCache;
+
     public byte[] getById(Long id) {
-        Movie m = movieManager.findById(id);
-        return m.getImageData();
+        return getCached(id, null, () -> movieManager.findImageData(id));
+    }
+
+    //表示サイズ（ピクセル）に合う縮小版
+    public byte[] getById(Long id, int size) {
+        return getCached(id, ThumbnailSize.fitting(size), () -> movieManager.findImageData(id, size));
+    }
+
+    private byte[] getCached(Long id, ThumbnailSize size, Supplier<byte[]> loader) {
+        //グリッドのセルごとに呼ばれるため、キャッシュにない映画は同時の要求とまとめて読み込む
+        Movie movie = movieManager.findByIds(Collections.singleton(id)).get(id);
+        if (movie == null || movie.getImageHash() == null) {
+            return loader.get();
+        }
+        return imageCache.getBytes(ImageByteCache.keyOf(movie.getImageHash(), size), loader);
+    }
+
+    //画像配信（ImageServlet）のURL。ブラウザにキャッシュされ、JSFを通らない
+    public String getUrl(long id, String imageHash, int size) {
+        return ImageServlet.urlOf(id, imageHash, size);
     }
 }
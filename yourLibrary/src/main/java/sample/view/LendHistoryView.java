@@ -1,9 +1,7 @@
 package sample.view;
 
 import java.io.Serializable;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -13,10 +11,9 @@ import javax.inject.Named;
 
 import lombok.Getter;
 import lombok.Setter;
-import sample.entity.LendHistory;
-import sample.entity.Movie;
 import sample.entity.User;
 import sample.logic.MovieManager;
+import sample.logic.dto.LendHistoryRow;
 import sample.util.interceptor.WithLog;
 import sample.view.dto.IdEntityListDataModel;
 import sample.view.util.SessionInfo;
@@ -31,15 +28,15 @@ public class LendHistoryView implements Serializable {
 
 	@Getter
 	@Setter
-	private IdEntityListDataModel<LendHistory> lendHistoryModel;
+	private IdEntityListDataModel<LendHistoryRow> lendHistoryModel;
 
 	@Getter
 	@Setter
-	private List<LendHistory> lendHistories;
+	private List<LendHistoryRow> lendHistories;
 
 	@Getter
 	@Setter
-	private List<LendHistory> selectedLendHistory;
+	private List<LendHistoryRow> selectedLendHistory;
 
 	@Inject
 	private MovieManager movieManager;
@@ -56,8 +53,8 @@ public class LendHistoryView implements Serializable {
 			return;
 		}
 
-		// 貸出中の映画を表示する
-		lendHistories = movieManager.findAllLendHistoryByUser(currentUser.getId());
+		// 貸出中の映画を表示する（一覧の列だけを読み込む）
+		lendHistories = movieManager.findLendHistoryRowsByUser(currentUser.getId());
 		lendHistoryModel = new IdEntityListDataModel<>(lendHistories);
 	}
 
@@ -68,13 +65,17 @@ public class LendHistoryView implements Serializable {
 			return;
 		}
 
-		for (LendHistory lendHistory : selectedLendHistory) {
-			lendHistory.setReturnDate(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
-			movieManager.updateLendHistory(lendHistory);
-			Movie movie = lendHistory.getMovie();
-			movie.setIsLent(false);
-			movieManager.updateMovie(movie);
+		//選択した履歴をまとめて返却する
+		List<Long> historyIds = new ArrayList<>(selectedLendHistory.size());
+		for (LendHistoryRow lendHistory : selectedLendHistory) {
+			historyIds.add(lendHistory.getId());
 		}
+		movieManager.returnMoviesById(historyIds);
+
+		//返却日を表示するため読み直す
+		lendHistories = movieManager.findLendHistoryRowsByUser(sessionInfo.getLoginUser().getId());
+		lendHistoryModel.setWrappedData(lendHistories);
+		selectedLendHistory = null;
 		return;
 	}
 
@@ -1,6 +1,5 @@
 package sample.view;
 
-import java.io.ByteArrayInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -8,21 +7,20 @@ import java.util.List;
 import java.util.Map;
 
 import javax.annotation.PostConstruct;
-import javax.faces.context.FacesContext;
-import javax.faces.event.PhaseId;
 import javax.faces.view.ViewScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.primefaces.event.DragDropEvent;
-import org.primefaces.model.DefaultStreamedContent;
-import org.primefaces.model.StreamedContent;
 
 import sample.common.constant.Constants;
 import sample.entity.Movie;
 import sample.entity.User;
+import sample.logic.LendResult;
 import sample.logic.MovieManager;
+import sample.logic.dto.MovieRow;
 import sample.util.IgnoreLogging;
+import sample.util.collection.LongArrays;
 import sample.util.interceptor.WithLog;
 import sample.view.util.SessionInfo;
 import sample.view.util.ViewUtil;
@@ -35,11 +33,13 @@ public class MovieCartView implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private List<Movie> moviesInCart;
+    //カートの映画・借りる映画のID。ビューと一緒にシリアライズされるため、IDだけを持つ
+    private long[] cartIds;
 
-    private List<Movie> moviesToBeLent;
+    private long[] rentIds;
 
-    private Map<String, byte[]> contents;
+    //表示用の行。必要になった時にIDからまとめて読み込み、保存しない
+    private transient Map<Long, MovieRow> rows;
 
     @Inject
     private MovieManager movieManager;
@@ -48,22 +48,15 @@ public class MovieCartView implements Serializable {
     public void init() {
 
         //Flashからカートに入れたもの
-        moviesInCart = (List<Movie>) ViewUtil.getFromFlash(Constants.SEARCH_MOVIE_VIEW_MOVIES_IN_CART);
-        moviesToBeLent = new ArrayList<Movie>();
-        contents = new HashMap<>();
-
-        if (moviesInCart != null && moviesInCart.size() > 0) {
-            for (Movie m : moviesInCart) {
-                contents.put(Long.toString(m.getId()), m.getImageData());
-
-            }
-        }
+        long[] ids = (long[]) ViewUtil.getFromFlash(Constants.SEARCH_MOVIE_VIEW_MOVIES_IN_CART);
+        cartIds = ids == null ? LongArrays.EMPTY : ids;
+        rentIds = LongArrays.EMPTY;
     }
 
     //借りる映画にドロップ
     @IgnoreLogging
     public void onDropToRent(DragDropEvent<?> ddEvent) {
-        Movie movie = ((Movie) ddEvent.getData());
+        MovieRow movie = ((MovieRow) ddEvent.getData());
 
         if (ddEvent.getDragId().startsWith("movieCartForm:cartGrid")
                 && "movieCartForm:cartField".equals(ddEvent.getDropId())) {
@@ -73,16 +66,16 @@ public class MovieCartView implements Serializable {
                 && "movieCartForm:rentField".equals(ddEvent.getDropId())) {
             return;
         }
-        if (!moviesToBeLent.contains(movie)) {
-            moviesToBeLent.add(movie);
-            moviesInCart.remove(movie);
+        if (!LongArrays.contains(rentIds, movie.getId())) {
+            rentIds = LongArrays.append(rentIds, movie.getId());
+            cartIds = LongArrays.remove(cartIds, movie.getId());
         }
     }
 
     //カート戻るにドロップ
     @IgnoreLogging
     public void onDropToCart(DragDropEvent<?> ddEvent) {
-        Movie movie = ((Movie) ddEvent.getData());
+        MovieRow movie = ((MovieRow) ddEvent.getData());
 
         if (ddEvent.getDragId().startsWith("movieCartForm:cartGrid")
                 && "movieCartForm:cartField".equals(ddEvent.getDropId())) {
@@ -92,9 +85,9 @@ public class MovieCartView implements Serializable {
                 && "movieCartForm:rentField".equals(ddEvent.getDropId())) {
             return;
         }
-        if (!moviesInCart.contains(movie)) {
-            moviesInCart.add(movie);
-            moviesToBeLent.remove(movie);
+        if (!LongArrays.contains(cartIds, movie.getId())) {
+            cartIds = LongArrays.append(cartIds, movie.getId());
+            rentIds = LongArrays.remove(rentIds, movie.getId());
         }
     }
 
@@ -107,8 +100,23 @@ public class MovieCartView implements Serializable {
             return null;
         }
 
-        for (Movie movie : moviesToBeLent) {
-            movieManager.lendMovie(movie, user);
+        //他のユーザが先に借りた映画は残して、画面に表示する
+        List<String> alreadyLent = new ArrayList<>();
+        long[] requested = rentIds;
+        List<LendResult> results = movieManager.lendMoviesById(LongArrays.asList(requested), user);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).isLent()) {
+                rentIds = LongArrays.remove(rentIds, requested[i]);
+            } else {
+                MovieRow row = rowsOf(requested).get(requested[i]);
+                alreadyLent.add(row == null ? String.valueOf(requested[i]) : row.getTitle());
+            }
+        }
+        //貸出状態が変わったため、表示用の行は読み直す
+        rows = null;
+        if (!alreadyLent.isEmpty()) {
+            ViewUtil.AddWarningMessage("貸出中のため借りられませんでした", String.join(", ", alreadyLent));
+            return null;
         }
         return "searchMovie.xhtml?faces-redirect=true";
     }
@@ -118,69 +126,50 @@ public class MovieCartView implements Serializable {
         return "searchMovie.xhtml?faces-redirect=true";
     }
 
-    public StreamedContent getImage() {
-
-        FacesContext context = FacesContext.getCurrentInstance();
-
-        System.out.println("PhaseId: " + context.getCurrentPhaseId());
-
-        if (context.getCurrentPhaseId() == PhaseId.RENDER_RESPONSE) {
-            // So, we're rendering the view. Return a stub StreamedContent so that it will generate right URL.
-            return new DefaultStreamedContent();
-        } else {
-            // So, browser is requesting the image. Get ID value from actual request param.
-            String id = context.getExternalContext().getRequestParameterMap().get("id");
-            System.out.println("image_id: " + id);
-
-            if (null == id) {
-                return null;
-            } else {
-                return DefaultStreamedContent.builder()
-                        .contentType("image/png")
-                        .stream(() -> {
-                            try {
-                                return new ByteArrayInputStream(contents.get(id));
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                                return null;
-                            }
-                        })
-                        .build();
-
-                //            return new DefaultStreamedContent(new ByteArrayInputStream(contents.get(id)));
-            }
-        }
-
-    }
-
     @IgnoreLogging
-    public List<Movie> getMoviesInCart() {
-        return moviesInCart;
+    public List<MovieRow> getMoviesInCart() {
+        return toRows(cartIds);
     }
 
     @IgnoreLogging
-    public void setMoviesInCart(List<Movie> moviesInCart) {
-        this.moviesInCart = moviesInCart;
+    public List<MovieRow> getMoviesToBeLent() {
+        return toRows(rentIds);
     }
 
-    @IgnoreLogging
-    public List<Movie> getMoviesToBeLent() {
-        return moviesToBeLent;
+    //IDの順に行を返す。削除された映画は除く
+    private List<MovieRow> toRows(long[] ids) {
+        Map<Long, MovieRow> loaded = rowsOf(ids);
+        List<MovieRow> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            MovieRow row = loaded.get(id);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
     }
 
-    @IgnoreLogging
-    public void setMoviesToBeLent(List<Movie> moviesToBeLent) {
-        this.moviesToBeLent = moviesToBeLent;
+    //カート・借りる映画の行を、まだ読んでいないものだけまとめて読み込む（キャッシュにあるものはDBを読まない）
+    private Map<Long, MovieRow> rowsOf(long[] ids) {
+        if (rows == null) {
+            rows = new HashMap<>();
+        }
+        List<Long> missing = new ArrayList<>();
+        for (long id : ids) {
+            if (!rows.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Movie movie : movieManager.findByIds(missing).values()) {
+                rows.put(movie.getId(), MovieRow.of(movie));
+            }
+            //見つからなかった（削除された）IDは、次回も読みに行かない
+            for (Long id : missing) {
+                rows.putIfAbsent(id, null);
+            }
+        }
+        return rows;
     }
 
-    //    @IgnoreLogging
-    //    public Map<String, DefaultStreamedContent> getContents() {
-    //        return contents;
-    //    }
-
-    //    @IgnoreLogging
-    //    public void setContents(Map<String, DefaultStreamedContent> contents) {
-    //        this.contents = contents;
-    //    }
-
 }
@@ -1,9 +1,7 @@
 package sample.view;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.faces.event.ActionEvent;
@@ -18,10 +16,13 @@ import org.slf4j.LoggerFactory;
 import lombok.Getter;
 import lombok.Setter;
 import sample.common.constant.Constants;
-import sample.entity.Movie;
 import sample.logic.MovieManagerImpl;
+import sample.logic.MovieSearchCondition;
+import sample.logic.MovieSuggestionIndex;
+import sample.logic.dto.MovieRow;
+import sample.util.collection.LongArrays;
 import sample.util.interceptor.WithLog;
-import sample.view.dto.IdEntityListDataModel;
+import sample.view.dto.MovieLazyDataModel;
 import sample.view.dto.SearchMoiveScreenDto;
 import sample.view.util.ViewUtil;
 
@@ -36,6 +37,9 @@ public class SearchMovieView implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final Logger logger = LoggerFactory.getLogger(LoginView.class);
 
+    //入力補完の候補数
+    private static final int SUGGESTION_LIMIT = 10;
+
     @Getter
     @Setter
     private SearchMoiveScreenDto searchMovieScreenDto;
@@ -43,27 +47,32 @@ public class SearchMovieView implements Serializable {
     @Inject
     private MovieManagerImpl movieManager;
 
+    @Inject
+    private MovieSuggestionIndex suggestionIndex;
+
     @PostConstruct
     //初期表示
     public void init() {
         searchMovieScreenDto = new SearchMoiveScreenDto();
-
-        ArrayList<Movie> movies = new ArrayList<Movie>();
-        searchMovieScreenDto.setMovieModel(new IdEntityListDataModel<Movie>(movies));
-        searchMovieScreenDto.setEnteredTitles(movieManager.getEnteredTitles());
-        searchMovieScreenDto.setEnteredCategory(movieManager.getEnteredCategory());
-        searchMovieScreenDto.setEnteredOutline(movieManager.getEnteredOutline());
     }
 
     //映画の検索
     public void searchMovie(ActionEvent actionEvent) {
         //検索オプション：　null→貸出中も含める
-        List<Movie> movies = movieManager.searchMovie(searchMovieScreenDto.getTitle(),
-                searchMovieScreenDto.getCategory(), searchMovieScreenDto.getOutline(), null);
-        logger.debug("Movies:", movies);
+        MovieSearchCondition condition = new MovieSearchCondition();
+        condition.setTitle(searchMovieScreenDto.getTitle());
+        condition.setCategory(searchMovieScreenDto.getCategory());
+        condition.setOutline(searchMovieScreenDto.getOutline());
+
+        //カートに入れた映画は検索結果に表示しない
+        for (long id : searchMovieScreenDto.getCartIds()) {
+            condition.getExcludedIds().add(id);
+        }
+        logger.debug("Search condition: title={}, category={}, outline={}", condition.getTitle(),
+                condition.getCategory(), condition.getOutline());
 
-        searchMovieScreenDto.setMovieModel(new IdEntityListDataModel<Movie>(movies));//画面表示用
-        searchMovieScreenDto.setMovies(movies);//在庫中の映画
+        //画面表示用。表示中のページだけを読み込む
+        searchMovieScreenDto.setMovieModel(new MovieLazyDataModel(movieManager, condition));
 
     }
 
@@ -76,27 +85,21 @@ public class SearchMovieView implements Serializable {
             return "";
         }
 
-        List<Movie> moviesInCart = searchMovieScreenDto.getMoviesInCart(); //カートの映画
-        List<Movie> selectedMovie = searchMovieScreenDto.getSelectedMovies(); //選択中の映画
-        List<Movie> movies = searchMovieScreenDto.getMovies(); //在庫中の映画
-
-        if (moviesInCart == null) {
-            moviesInCart = new ArrayList<>();
-        }
+        long[] cartIds = searchMovieScreenDto.getCartIds(); //カートの映画
+        List<MovieRow> selectedMovie = searchMovieScreenDto.getSelectedMovies(); //選択中の映画
 
-        if (moviesInCart.size() >= 10) {
+        if (cartIds.length >= 10) {
             ViewUtil.AddErrorMessage("制限", "カートに入れられるのは10件までです。");
             return null;
         }
 
-        for (Movie m : selectedMovie) {
-            if (!moviesInCart.contains(m)) {
-                moviesInCart.add(m);
-                movies.remove(m);
+        for (MovieRow m : selectedMovie) {
+            if (!LongArrays.contains(cartIds, m.getId())) {
+                cartIds = LongArrays.append(cartIds, m.getId());
+                searchMovieScreenDto.getMovieModel().exclude(m.getId());
 
                 //画面DTO設定
-                searchMovieScreenDto.getMovieModel().setWrappedData(movies);
-                searchMovieScreenDto.setMoviesInCart(moviesInCart);
+                searchMovieScreenDto.setCartIds(cartIds);
                 searchMovieScreenDto.setSelectedMovies(null);
                 searchMovieScreenDto.setIsSelected(false);
 
@@ -107,37 +110,28 @@ public class SearchMovieView implements Serializable {
         return null;
     }
 
-    //viewCart.xhtmlへの遷移。Flashにカートの中の映画を設定する。
+    //viewCart.xhtmlへの遷移。Flashにカートの中の映画のIDを設定する。
     public String viewCart() {
-        List<Movie> moviesInCart = searchMovieScreenDto.getMoviesInCart(); //カートの映画
-        if (moviesInCart == null || moviesInCart.size() == 0) {
+        long[] cartIds = searchMovieScreenDto.getCartIds(); //カートの映画
+        if (cartIds.length == 0) {
             ViewUtil.AddErrorMessage("エラー", "カートが空です。");
             return null;
         }
-        ViewUtil.putToFlash(Constants.SEARCH_MOVIE_VIEW_MOVIES_IN_CART, moviesInCart);
+        ViewUtil.putToFlash(Constants.SEARCH_MOVIE_VIEW_MOVIES_IN_CART, cartIds.clone());
         return "/viewCart.xhtml?faces-redirect=true";
     }
 
-    //検索欄補足
+    //検索欄補足。候補はアプリケーション共通のインデックスから上位だけを取得する
     public List<String> completeTitle(String input) {
-        return searchMovieScreenDto.getEnteredTitles()
-                .stream()
-                .filter(e -> e.contains(input))
-                .collect(Collectors.toList());
+        return suggestionIndex.completeTitle(input, SUGGESTION_LIMIT);
     }
 
     public List<String> completeCategory(String input) {
-        return searchMovieScreenDto.getEnteredCategory()
-                .stream()
-                .filter(e -> e.contains(input))
-                .collect(Collectors.toList());
+        return suggestionIndex.completeCategory(input, SUGGESTION_LIMIT);
     }
 
     public List<String> completeOutline(String input) {
-        return searchMovieScreenDto.getEnteredOutline()
-                .stream()
-                .filter(e -> e.contains(input))
-                .collect(Collectors.toList());
+        return suggestionIndex.completeOutline(input, SUGGESTION_LIMIT);
     }
 
     // チェックボクスが選択されたら、「カート追加」リンクを活性化
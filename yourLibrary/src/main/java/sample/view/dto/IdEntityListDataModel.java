@@ -1,38 +1,77 @@
 package sample.view.dto;
 
 import java.util.List;
-import java.util.Optional;
 
 import javax.faces.model.ListDataModel;
 
 import org.primefaces.model.SelectableDataModel;
 
-import sample.entity.IdEntity;
+import sample.entity.Identifiable;
+import sample.util.collection.LongIntHashMap;
 
-public class IdEntityListDataModel<T extends IdEntity> extends ListDataModel<T> implements SelectableDataModel<T> {
+public class IdEntityListDataModel<T extends Identifiable> extends ListDataModel<T> implements SelectableDataModel<T> {
+
+	//ID→行番号。選択行の数だけgetRowDataが呼ばれるため、一覧を毎回探さずに引く。
+	//データを差し替えた時に破棄し、次に引く時に作り直す
+	private LongIntHashMap index;
+
+	//索引を作った時の一覧の件数（同じIDが複数あると索引の件数とは一致しない）
+	private int indexedSize;
 
 	//データ保存
 	public IdEntityListDataModel(List<T> data) {
 		super(data);
 	}
 
-	@SuppressWarnings("unchecked")
+	@Override
+	public void setWrappedData(Object data) {
+		super.setWrappedData(data);
+		index = null;
+	}
+
 	@Override
 	public T getRowData(String key) {
-		List<T> entities = (List<T>) getWrappedData();
-		long id = Long.parseLong(key);
-		Optional<T> entity = entities.stream().filter(e -> e.getId() == id).findFirst();
-		return entity.orElse(null);
-		//		for (T entity : entities) {
-		//			if (entity.getId() == id) {
-		//				return entity;
-		//			}
-		//		}
-		//		return null;
+		final long id;
+		try {
+			id = Long.parseLong(key);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return getRowData(id);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getRowData(long id) {
+		final List<T> entities = (List<T>) getWrappedData();
+		if (entities == null) {
+			return null;
+		}
+		if (index == null) {
+			buildIndex(entities);
+		}
+		int row = index.get(id, -1);
+		//一覧が直接変更された場合は作り直す
+		if (row >= entities.size() || (row >= 0 && entities.get(row).getId() != id)
+				|| (row < 0 && indexedSize != entities.size())) {
+			buildIndex(entities);
+			row = index.get(id, -1);
+		}
+		return row < 0 ? null : entities.get(row);
+	}
+
+	private void buildIndex(List<? extends Identifiable> entities) {
+		final LongIntHashMap map = new LongIntHashMap(entities.size());
+		for (int i = entities.size() - 1; i >= 0; i--) {
+			//同じIDが複数ある場合は先頭の行
+			map.put(entities.get(i).getId(), i);
+		}
+		index = map;
+		indexedSize = entities.size();
 	}
 
+	//行のキーは文字列で使われるため、Longにせず文字列で返す
 	@Override
 	public Object getRowKey(T entity) {
-		return entity.getId();
+		return Long.toString(entity.getId());
 	}
 }
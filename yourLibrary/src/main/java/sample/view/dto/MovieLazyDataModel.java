@@ -0,0 +1,119 @@
+package sample.view.dto;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.LazyDataModel;
+import org.primefaces.model.SortMeta;
+import org.primefaces.model.SortOrder;
+
+import sample.logic.MovieManager;
+import sample.logic.MovieSearchCondition;
+import sample.logic.MovieSeekKey;
+import sample.logic.dto.MovieRow;
+
+//映画検索結果の遅延読み込みモデル。表示中のページだけを、一覧の列（MovieRow）としてDBから取得します。
+public class MovieLazyDataModel extends LazyDataModel<MovieRow> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final MovieManager movieManager;
+
+    //検索欄で入力された条件
+    private final MovieSearchCondition baseCondition;
+
+    //一覧のソート・フィルタを反映した条件
+    private MovieSearchCondition condition;
+
+    //ページ先頭のインデックス→前ページ最終行の位置。次・前ページはキーセットで読む
+    private final Map<Integer, MovieSeekKey> seekKeys = new HashMap<>();
+
+    private int loadedPageSize;
+
+    private List<MovieRow> page = Collections.emptyList();
+
+    public MovieLazyDataModel(MovieManager movieManager, MovieSearchCondition baseCondition) {
+        this.movieManager = movieManager;
+        this.baseCondition = baseCondition;
+    }
+
+    @Override
+    public List<MovieRow> load(int first, int pageSize, String sortField, SortOrder sortOrder,
+            Map<String, FilterMeta> filterBy) {
+        return loadPage(first, pageSize, sortField, sortOrder, filterBy);
+    }
+
+    //複数ソートの場合、キーセットは先頭のソート列のみで行う
+    @Override
+    public List<MovieRow> load(int first, int pageSize, List<SortMeta> multiSortMeta,
+            Map<String, FilterMeta> filterBy) {
+        if (multiSortMeta == null || multiSortMeta.isEmpty()) {
+            return loadPage(first, pageSize, null, null, filterBy);
+        }
+        SortMeta sortMeta = multiSortMeta.get(0);
+        return loadPage(first, pageSize, sortMeta.getSortField(), sortMeta.getSortOrder(), filterBy);
+    }
+
+    private List<MovieRow> loadPage(int first, int pageSize, String sortField, SortOrder sortOrder,
+            Map<String, FilterMeta> filterBy) {
+        MovieSearchCondition current = baseCondition.copy();
+        if (sortField != null && sortOrder != null && sortOrder != SortOrder.UNSORTED) {
+            current.setSortField(sortField);
+            current.setAscending(sortOrder == SortOrder.ASCENDING);
+        }
+        if (filterBy != null) {
+            for (FilterMeta filter : filterBy.values()) {
+                Object value = filter.getFilterValue();
+                if (value == null || value.toString().isEmpty()) {
+                    continue;
+                }
+                if ("isLent".equals(filter.getFilterField())) {
+                    current.setIsLent(Boolean.valueOf(value.toString()));
+                } else {
+                    current.getFilters().put(filter.getFilterField(), value.toString());
+                }
+            }
+        }
+
+        //条件・ページサイズが変わったら位置と件数を読み直す
+        if (!current.equals(condition) || pageSize != loadedPageSize) {
+            condition = current;
+            loadedPageSize = pageSize;
+            seekKeys.clear();
+            setRowCount((int) movieManager.countMovie(condition));
+        }
+
+        page = movieManager.searchMovieRows(condition, first == 0 ? null : seekKeys.get(first), first, pageSize);
+        if (!page.isEmpty()) {
+            MovieRow last = page.get(page.size() - 1);
+            seekKeys.put(first + pageSize, MovieSeekKey.of(last, condition.getSortField()));
+        }
+        return page;
+    }
+
+    //検索結果から除外して、読み直す（カートに入れた映画など）
+    public void exclude(long movieId) {
+        baseCondition.getExcludedIds().add(movieId);
+        condition = null;
+    }
+
+    @Override
+    public MovieRow getRowData(String rowKey) {
+        long id = Long.parseLong(rowKey);
+        for (MovieRow movie : page) {
+            if (movie.getId() == id) {
+                return movie;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object getRowKey(MovieRow movie) {
+        return movie.getId();
+    }
+
+}
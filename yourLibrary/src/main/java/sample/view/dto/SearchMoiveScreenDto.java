@@ -1,12 +1,17 @@
 package sample.view.dto;
 
+import java.io.Serializable;
 import java.util.List;
 
 import lombok.Getter;
 import lombok.Setter;
-import sample.entity.Movie;
+import sample.logic.dto.MovieRow;
+import sample.util.collection.LongArrays;
 
-public class SearchMoiveScreenDto {
+//画面の状態はビューと一緒にシリアライズされるため、カートは映画のIDだけを持ちます。
+public class SearchMoiveScreenDto implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @Getter
     @Setter
@@ -20,33 +25,25 @@ public class SearchMoiveScreenDto {
     @Setter
     private String outline; //あらすじ
 
+    //一覧で選択中の行。選択を送信したリクエストの中だけで使うため、保存しない
     @Getter
     @Setter
-    private List<Movie> selectedMovies;
+    private transient List<MovieRow> selectedMovies;
 
     @Getter
     @Setter
-    private IdEntityListDataModel<Movie> movieModel;
+    private MovieLazyDataModel movieModel; //検索結果（表示中のページのみ読み込む）
 
+    //カートに入れた映画のID（入れた順）
     @Getter
     @Setter
-    private List<Movie> moviesInCart;
+    private long[] cartIds = LongArrays.EMPTY;
 
     private boolean isSelected;
 
-    @Getter
-    @Setter
-    private List<String> enteredTitles;
-
-    @Getter
-    @Setter
-    private List<String> enteredCategory;
-
-    @Getter
-    @Setter
-    private List<String> enteredOutline;
-
-    private List<Movie> movies;
+    public int getCartSize() {
+        return cartIds.length;
+    }
 
     public boolean getIsSelected() {
         return isSelected;
@@ -56,12 +53,4 @@ public class SearchMoiveScreenDto {
         return this.isSelected = _isSelected;
     }
 
-    public List<Movie> getMovies() {
-        return movies;
-    }
-
-    public void setMovies(List<Movie> movies) {
-        this.movies = movies;
-    }
-
 }
@@ -0,0 +1,17 @@
+-- MOVIE.IMG_DAT を MOVIE_IMAGE テーブルへ分離する。
+-- 検索・一覧のクエリでポスター画像のBLOBを読み込まないようにするための移行です。
+-- 実行前にバックアップを取得してください。
+
+CREATE TABLE MOVIE_IMAGE (
+    MOVIE_ID BIGINT NOT NULL,
+    IMG_DAT LONGBLOB,
+    PRIMARY KEY (MOVIE_ID),
+    CONSTRAINT FK_MOVIE_IMAGE_MOVIE FOREIGN KEY (MOVIE_ID) REFERENCES MOVIE (ID) ON DELETE CASCADE
+);
+
+-- 既存の画像データを移行
+INSERT INTO MOVIE_IMAGE (MOVIE_ID, IMG_DAT)
+SELECT ID, IMG_DAT FROM MOVIE WHERE IMG_DAT IS NOT NULL;
+
+-- 移行後、MOVIEから画像列を削除
+ALTER TABLE MOVIE DROP COLUMN IMG_DAT;
@@ -0,0 +1,20 @@
+-- 全エンティティで共有していた採番行(SEQUENCE.SEQ_GEN_TABLE)を、エンティティごとの行に分ける。
+-- 採番の行ロックが映画・ユーザ・貸出履歴の登録で競合しないようにするための移行です。
+-- アプリケーションを停止してから実行してください。
+
+CREATE TABLE ID_SEQUENCE (
+    SEQ_NAME VARCHAR(50) NOT NULL,
+    SEQ_COUNT BIGINT,
+    PRIMARY KEY (SEQ_NAME)
+);
+
+-- 既存のIDと重ならないよう、旧採番値と各テーブルの最大IDの大きい方から始める
+INSERT INTO ID_SEQUENCE (SEQ_NAME, SEQ_COUNT)
+SELECT 'MOVIE', GREATEST(COALESCE((SELECT MAX(ID) FROM MOVIE), 0),
+    COALESCE((SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SEQ_GEN_TABLE'), 0));
+INSERT INTO ID_SEQUENCE (SEQ_NAME, SEQ_COUNT)
+SELECT 'USER', GREATEST(COALESCE((SELECT MAX(ID) FROM USERTBL), 0),
+    COALESCE((SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SEQ_GEN_TABLE'), 0));
+INSERT INTO ID_SEQUENCE (SEQ_NAME, SEQ_COUNT)
+SELECT 'LEND_HISTORY', GREATEST(COALESCE((SELECT MAX(ID) FROM LEND_HISTORY), 0),
+    COALESCE((SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SEQ_GEN_TABLE'), 0));
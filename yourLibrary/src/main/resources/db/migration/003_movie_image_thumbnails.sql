@@ -0,0 +1,8 @@
+-- MOVIE_IMAGE にポスター画像の縮小版（長辺64/200/400px、JPEG）の列を追加する。
+-- カート・グリッドで元画像を送らないようにするための移行です。
+-- 既存の画像の縮小版は、アプリケーションの起動後にバックグラウンドで作成されます（ThumbnailBackfill）。
+
+ALTER TABLE MOVIE_IMAGE
+    ADD COLUMN THUMB_64 MEDIUMBLOB,
+    ADD COLUMN THUMB_200 MEDIUMBLOB,
+    ADD COLUMN THUMB_400 MEDIUMBLOB;
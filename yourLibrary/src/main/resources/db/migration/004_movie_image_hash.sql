@@ -0,0 +1,9 @@
+-- MOVIE に画像データのハッシュ（SHA-256の16進）の列を追加する。
+-- 画像配信（/image/{ID}/{ハッシュ}）のURL・ETagに使い、ブラウザに長期間キャッシュさせるための移行です。
+
+ALTER TABLE MOVIE ADD COLUMN IMAGE_HASH VARCHAR(64);
+
+-- 既存の画像のハッシュを設定（MySQLのSHA2は小文字の16進を返す）
+UPDATE MOVIE m JOIN MOVIE_IMAGE i ON i.MOVIE_ID = m.ID
+SET m.IMAGE_HASH = SHA2(i.IMG_DAT, 256)
+WHERE i.IMG_DAT IS NOT NULL;
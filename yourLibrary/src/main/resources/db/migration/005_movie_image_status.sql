@@ -0,0 +1,7 @@
+-- MOVIE にポスター画像の処理状態の列を追加する。
+-- アップロードした画像は一時ファイルに保存してから、バックグラウンドで画像ストアへの保存・縮小版の作成を行います。
+-- PROCESSING（処理中）/ READY（表示可能）/ FAILED（保存できなかった）。画像がない場合はNULL
+
+ALTER TABLE MOVIE ADD COLUMN IMAGE_STATUS VARCHAR(16);
+
+UPDATE MOVIE SET IMAGE_STATUS = 'READY' WHERE IMAGE_HASH IS NOT NULL;
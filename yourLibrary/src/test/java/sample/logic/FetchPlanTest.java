@@ -0,0 +1,131 @@
+package sample.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.SessionEventListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import sample.entity.LendHistory;
+import sample.entity.Movie;
+import sample.entity.User;
+
+//読み込み計画を使うと、行数に関係なく一定数のSQLで一覧を読み込めることを確認する
+@RunWith(JUnit4.class)
+public class FetchPlanTest {
+
+    private static final int ROWS = 5;
+
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private EntityTransaction tx;
+    private final MovieManagerImpl movieManagerImpl = new MovieManagerImpl();
+    private final UserManagerImpl userManagerImpl = new UserManagerImpl();
+
+    //発行したSQLの件数
+    private final AtomicInteger statements = new AtomicInteger();
+    private final SessionEventListener counter = new SessionEventAdapter() {
+        @Override
+        public void preExecuteCall(SessionEvent event) {
+            statements.incrementAndGet();
+        }
+    };
+
+    private final List<Movie> movies = new ArrayList<>();
+    private User user;
+
+    @Before
+    public void setUp() throws Exception {
+        emf = Persistence.createEntityManagerFactory("yourlibrary-test");
+        //EntityManagerを作る前に登録する（セッションの取得時にリスナーが引き継がれる）
+        JpaHelper.getServerSession(emf).getEventManager().addListener(counter);
+        em = emf.createEntityManager();
+        tx = em.getTransaction();
+        tx.begin();
+        movieManagerImpl.setEm(em);
+        userManagerImpl.setEm(em);
+
+        user = userManagerImpl.createUser("fetchPlanUser", "fetchPlanUser");
+        for (int i = 0; i < ROWS; i++) {
+            movies.add(movieManagerImpl.createMovie("fetchPlanTitle" + i));
+        }
+        movieManagerImpl.lendMovies(movies, user);
+        em.flush();
+        em.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        em.clear();
+        userManagerImpl.removeUser(user);
+        for (Movie movie : movies) {
+            movieManagerImpl.removeMovie(movie);
+        }
+        tx.commit();
+        em.close();
+        JpaHelper.getServerSession(emf).getEventManager().removeListener(counter);
+    }
+
+    @Test
+    public void testUserDashboard() {
+        statements.set(0);
+        final List<LendHistory> histories = movieManagerImpl.findAllLendHistoryByUser(user.getId(),
+                FetchPlan.USER_DASHBOARD);
+        assertEquals(ROWS, histories.size());
+        for (LendHistory history : histories) {
+            assertNotNull(history.getMovie().getTitle());
+        }
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    public void testHistoryList() {
+        statements.set(0);
+        final List<LendHistory> histories = movieManagerImpl.findAllLendHistory(FetchPlan.HISTORY_LIST);
+        assertTrue(histories.size() >= ROWS);
+        for (LendHistory history : histories) {
+            assertNotNull(history.getMovie().getTitle());
+            if (history.getLendUser() != null) {
+                history.getLendUser().getName();
+            }
+        }
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    public void testCart() {
+        final List<Long> ids = new ArrayList<>();
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        statements.set(0);
+        final List<Movie> cart = movieManagerImpl.findMovies(ids, FetchPlan.CART);
+        assertEquals(ROWS, cart.size());
+        assertEquals("fetchPlanTitle0", cart.get(0).getTitle());
+        for (Movie movie : cart) {
+            assertTrue(movie.getIsLent());
+        }
+        assertEquals(1, statements.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongRoot() {
+        movieManagerImpl.findMovies(new ArrayList<>(), FetchPlan.HISTORY_LIST);
+    }
+
+}
@@ -0,0 +1,81 @@
+package sample.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+/**
+ * 登録スループットのベンチマーク。1, 8, 32スレッドで映画・ユーザ・貸出履歴を1件1トランザクションで登録し、
+ * 件数/秒を表示します。ID採番の待ちが支配的かどうかは、スレッド数に対する伸び方で確認します。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.logic.IdAllocationBenchmark [1スレッドあたりの件数]
+ * </pre>
+ * yourlibrary-test のデータベースを使います。
+ */
+public class IdAllocationBenchmark {
+
+    private static final int[] WRITERS = { 1, 8, 32 };
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length == 0 ? 500 : Integer.parseInt(args[0]);
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("yourlibrary-test");
+        //ウォームアップ
+        run(emf, 4, perThread / 10, "warmup");
+        for (int writers : WRITERS) {
+            run(emf, writers, perThread, "run");
+        }
+        emf.close();
+    }
+
+    private static void run(EntityManagerFactory emf, int writers, int perThread, String label) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            String prefix = label + writers + "_" + t + "_" + System.nanoTime() + "_";
+            futures.add(executor.submit(() -> {
+                start.await();
+                insert(emf, prefix, perThread);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        //1回の登録で映画・ユーザ・貸出履歴の3行
+        long rows = 3L * writers * perThread;
+        System.out.printf("%-6s writers=%2d: %8.1f inserts/s (%d rows in %d ms)%n", label, writers,
+                rows / (elapsed / 1e9), rows, elapsed / 1000000);
+    }
+
+    private static void insert(EntityManagerFactory emf, String prefix, int count) {
+        EntityManager em = emf.createEntityManager();
+        MovieManagerImpl movieManager = new MovieManagerImpl();
+        movieManager.setEm(em);
+        UserManagerImpl userManager = new UserManagerImpl();
+        userManager.setEm(em);
+        for (int i = 0; i < count; i++) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            movieManager.lendMovie(movieManager.createMovie(prefix + i), userManager.createUser(prefix + i, prefix));
+            tx.commit();
+            em.clear();
+        }
+        em.close();
+    }
+
+}
@@ -0,0 +1,128 @@
+package sample.logic;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import sample.entity.LendHistory;
+import sample.entity.Movie;
+import sample.entity.User;
+
+/**
+ * 貸出・返却のベンチマーク。1件ずつのループ（1件1トランザクション）と、
+ * lendMovies/returnMovies（1トランザクション、バッチ書き込み）を10件のカートで比較します。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.logic.LendBatchBenchmark [回数]
+ * </pre>
+ * yourlibrary-test のデータベースを使います。
+ */
+public class LendBatchBenchmark {
+
+    private static final int CART_SIZE = 10;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length == 0 ? 200 : Integer.parseInt(args[0]);
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("yourlibrary-test");
+        EntityManager em = emf.createEntityManager();
+        MovieManagerImpl movieManager = new MovieManagerImpl();
+        movieManager.setEm(em);
+        UserManagerImpl userManager = new UserManagerImpl();
+        userManager.setEm(em);
+
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        User user = userManager.createUser("lendBenchUser", "lendBenchUser");
+        List<Movie> cart = new ArrayList<>();
+        for (int i = 0; i < CART_SIZE; i++) {
+            cart.add(movieManager.createMovie("lendBench" + i));
+        }
+        tx.commit();
+        em.clear();
+
+        //ウォームアップ
+        run("loop ", iterations / 10, em, movieManager, user, cart, false);
+        run("batch", iterations / 10, em, movieManager, user, cart, true);
+
+        run("loop ", iterations, em, movieManager, user, cart, false);
+        run("batch", iterations, em, movieManager, user, cart, true);
+
+        em.close();
+        emf.close();
+    }
+
+    private static void run(String label, int iterations, EntityManager em, MovieManagerImpl movieManager,
+            User user, List<Movie> cart, boolean batch) {
+        long lendNanos = 0;
+        long returnNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            List<LendHistory> histories = batch ? lendBatch(em, movieManager, user, cart)
+                    : lendLoop(em, movieManager, user, cart);
+            lendNanos += System.nanoTime() - start;
+            em.clear();
+
+            start = System.nanoTime();
+            if (batch) {
+                returnBatch(em, movieManager, histories);
+            } else {
+                returnLoop(em, movieManager, histories);
+            }
+            returnNanos += System.nanoTime() - start;
+            em.clear();
+        }
+        System.out.printf("%s lend: %8.1f carts/s, return: %8.1f carts/s (%d items/cart)%n", label,
+                iterations / (lendNanos / 1e9), iterations / (returnNanos / 1e9), CART_SIZE);
+    }
+
+    //画面の従来の処理と同じく、1件ずつ別トランザクションで貸し出す
+    private static List<LendHistory> lendLoop(EntityManager em, MovieManagerImpl movieManager, User user,
+            List<Movie> cart) {
+        List<LendHistory> histories = new ArrayList<>();
+        for (Movie movie : cart) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            histories.add(movieManager.lendMovie(movie, user));
+            tx.commit();
+        }
+        return histories;
+    }
+
+    private static List<LendHistory> lendBatch(EntityManager em, MovieManagerImpl movieManager, User user,
+            List<Movie> cart) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        List<LendHistory> histories = new ArrayList<>();
+        for (LendResult result : movieManager.lendMovies(cart, user)) {
+            histories.add(result.getHistory());
+        }
+        tx.commit();
+        return histories;
+    }
+
+    private static void returnLoop(EntityManager em, MovieManagerImpl movieManager, List<LendHistory> histories) {
+        for (LendHistory history : histories) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            history.setReturnDate(new Date());
+            movieManager.updateLendHistory(history);
+            Movie movie = history.getMovie();
+            movie.setIsLent(false);
+            movieManager.updateMovie(movie);
+            tx.commit();
+        }
+    }
+
+    private static void returnBatch(EntityManager em, MovieManagerImpl movieManager, List<LendHistory> histories) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        movieManager.returnMovies(histories);
+        tx.commit();
+    }
+
+}
@@ -0,0 +1,129 @@
+package sample.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import sample.entity.Movie;
+import sample.entity.User;
+
+/**
+ * 同じ映画を複数スレッドで同時に借りるベンチマーク。貸出数/秒と競合率を表示し、二重貸出がないことを確認します。
+ * 各ラウンドで全映画を未貸出に戻し、全スレッドが全映画をランダムな順に1件ずつ（1件1トランザクション）借りにいきます。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.logic.LendContentionBenchmark [スレッド数] [映画数] [ラウンド数]
+ * </pre>
+ * yourlibrary-test のデータベースを使います。
+ */
+public class LendContentionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int movieCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("yourlibrary-test");
+        List<Long> movieIds = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        EntityManager setup = emf.createEntityManager();
+        EntityTransaction tx = setup.getTransaction();
+        tx.begin();
+        MovieManagerImpl movieManager = new MovieManagerImpl();
+        movieManager.setEm(setup);
+        UserManagerImpl userManager = new UserManagerImpl();
+        userManager.setEm(setup);
+        for (int i = 0; i < movieCount; i++) {
+            movieIds.add(movieManager.createMovie("contention" + i).getId());
+        }
+        for (int i = 0; i < threads; i++) {
+            userIds.add(userManager.createUser("contention" + System.nanoTime() + "_" + i, "contention").getId());
+        }
+        tx.commit();
+
+        LongAdder lent = new LongAdder();
+        LongAdder conflicts = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long elapsed = 0;
+        for (int round = 0; round < rounds; round++) {
+            reset(setup, movieIds);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long userId = userIds.get(t);
+                long seed = round * 31L + t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    attempt(emf, userId, movieIds, new Random(seed), lent, conflicts);
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            elapsed += System.nanoTime() - begin;
+        }
+        executor.shutdown();
+
+        long attempts = lent.sum() + conflicts.sum();
+        System.out.printf("threads=%d movies=%d rounds=%d%n", threads, movieCount, rounds);
+        System.out.printf("lends/sec: %.1f, attempts/sec: %.1f, conflict rate: %.1f%%%n",
+                lent.sum() / (elapsed / 1e9), attempts / (elapsed / 1e9), 100.0 * conflicts.sum() / attempts);
+        //各ラウンドで各映画はちょうど1回だけ貸し出されるはず
+        System.out.printf("lent=%d expected=%d double lends=%d%n", lent.sum(), (long) movieCount * rounds,
+                lent.sum() - (long) movieCount * rounds);
+
+        setup.close();
+        emf.close();
+    }
+
+    private static void attempt(EntityManagerFactory emf, long userId, List<Long> movieIds, Random random,
+            LongAdder lent, LongAdder conflicts) {
+        EntityManager em = emf.createEntityManager();
+        MovieManagerImpl movieManager = new MovieManagerImpl();
+        movieManager.setEm(em);
+        User user = new User();
+        user.setId(userId);
+        List<Long> order = new ArrayList<>(movieIds);
+        Collections.shuffle(order, random);
+        for (long movieId : order) {
+            //画面から渡されるのと同じく、古い可能性のある映画を使う
+            Movie movie = new Movie();
+            movie.setId(movieId);
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            LendResult result = movieManager.tryLendMovie(movie, user);
+            tx.commit();
+            em.clear();
+            if (result.isLent()) {
+                lent.increment();
+            } else {
+                conflicts.increment();
+            }
+        }
+        em.close();
+    }
+
+    private static void reset(EntityManager em, List<Long> movieIds) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createQuery("update Movie m set m.isLent = false where m.id in :ids")
+                .setParameter("ids", movieIds)
+                .executeUpdate();
+        tx.commit();
+        em.clear();
+    }
+
+}
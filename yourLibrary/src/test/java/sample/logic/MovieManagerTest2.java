@@ -2,8 +2,12 @@ package sample.logic;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
@@ -15,9 +19,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import sample.entity.ImageStatus;
 import sample.entity.LendHistory;
 import sample.entity.Movie;
 import sample.entity.User;
+import sample.logic.dto.LendHistoryRow;
+import sample.logic.dto.MovieRow;
+import sample.logic.image.ThumbnailSize;
 
 @RunWith(JUnit4.class)
 public class MovieManagerTest2 {
@@ -79,11 +87,13 @@ public class MovieManagerTest2 {
             assertEquals(new Double(5), new Double(history2.getStarRating()));
             assertNotNull(history2.getDueDate());
 
-            //Movie側からの取得
-            final Movie movie1 = movieManagerImpl.findById(movie.getId());
+            //Movie側からの取得（findByIdは貸出履歴を含まないコピーを返すため、関連はエンティティで確認する）
+            assertNull(movieManagerImpl.findById(movie.getId()).getLendHistories());
+            final Movie movie1 = em.find(Movie.class, movie.getId());
             assertEquals(history1.getId(), movie1.getLendHistories().get(0).getId());
             //User側からの取得
-            final User user1 = userManagerImpl.findById(user.getId());
+            assertNull(userManagerImpl.findById(user.getId()).getLendHistories());
+            final User user1 = em.find(User.class, user.getId());
             assertEquals(history1.getId(), user1.getLendHistories().get(0).getId());
 
             //返却
@@ -126,4 +136,278 @@ public class MovieManagerTest2 {
             }
         }
     }
+
+    @Test
+    public void testImageData() {
+
+        Movie movie = null;
+        try {
+            movie = movieManagerImpl.createMovie("movie6title");
+            assertNull(movieManagerImpl.findImageData(movie.getId()));
+
+            //画像の登録
+            final byte[] imageData = new byte[] { 1, 2, 3, 4 };
+            movieManagerImpl.saveImageData(movie.getId(), imageData);
+            em.flush();
+            em.clear();
+            assertArrayEquals(imageData, movieManagerImpl.findImageData(movie.getId()));
+            assertEquals(ImageStatus.READY, movieManagerImpl.findById(movie.getId()).getImageStatus());
+
+            //アップロードの非同期処理の結果
+            assertTrue(movieManagerImpl.updateImageStatus(movie.getId(), ImageStatus.FAILED));
+            em.flush();
+            em.clear();
+            assertEquals(ImageStatus.FAILED, movieManagerImpl.findById(movie.getId()).getImageStatus());
+            assertFalse(movieManagerImpl.updateImageStatus(-1, ImageStatus.FAILED));
+
+            //画像の更新
+            final byte[] imageData2 = new byte[] { 5, 6 };
+            movieManagerImpl.saveImageData(movie.getId(), imageData2);
+            em.flush();
+            em.clear();
+            assertArrayEquals(imageData2, movieManagerImpl.findImageData(movie.getId()));
+
+            //縮小版がなければ元画像を返す
+            assertArrayEquals(imageData2, movieManagerImpl.findImageData(movie.getId(), 200));
+            assertEquals(Arrays.asList(movie.getId()),
+                    movieManagerImpl.findImageIdsWithoutThumbnails(movie.getId() - 1, 10));
+
+            //表示サイズに合う縮小版を返す
+            final Map<ThumbnailSize, byte[]> thumbnails = new EnumMap<>(ThumbnailSize.class);
+            thumbnails.put(ThumbnailSize.SMALL, new byte[] { 7 });
+            thumbnails.put(ThumbnailSize.MEDIUM, new byte[] { 8 });
+            assertTrue(movieManagerImpl.saveThumbnails(movie.getId(), thumbnails));
+            em.flush();
+            em.clear();
+            assertArrayEquals(new byte[] { 7 }, movieManagerImpl.findImageData(movie.getId(), 64));
+            assertArrayEquals(new byte[] { 8 }, movieManagerImpl.findImageData(movie.getId(), 200));
+            assertArrayEquals(imageData2, movieManagerImpl.findImageData(movie.getId(), 400));
+            assertTrue(movieManagerImpl.findImageIdsWithoutThumbnails(movie.getId() - 1, 10).isEmpty());
+
+            //Movieを削除した際に画像も削除されることの確認
+            final long movieId = movie.getId();
+            movieManagerImpl.removeMovie(movie);
+            movie = null;
+            assertNull(movieManagerImpl.findImageData(movieId));
+        } finally {
+            if (movie != null) {
+                movieManagerImpl.removeMovie(movie);
+            }
+        }
+    }
+
+    @Test
+    public void testLendAndReturnMovies() {
+
+        final List<Movie> movies = new ArrayList<>();
+        User user = null;
+        try {
+            for (int i = 0; i < 3; i++) {
+                movies.add(movieManagerImpl.createMovie("movie7title" + i));
+            }
+            user = userManagerImpl.createUser("user3", "user3");
+
+            //まとめて貸出
+            final List<LendResult> results = movieManagerImpl.lendMovies(movies, user);
+            assertEquals(3, results.size());
+            for (LendResult result : results) {
+                assertEquals(LendResult.Status.LENT, result.getStatus());
+            }
+            //貸出中の映画は借りられない
+            final LendResult again = movieManagerImpl.tryLendMovie(movies.get(0), user);
+            assertEquals(LendResult.Status.ALREADY_LENT, again.getStatus());
+            assertNull(again.getHistory());
+            try {
+                movieManagerImpl.lendMovie(movies.get(0), user);
+                fail();
+            } catch (MovieAlreadyLentException e) {
+                assertEquals(movies.get(0).getId(), e.getMovieId());
+            }
+            em.flush();
+            em.clear();
+            for (Movie movie : movies) {
+                assertTrue(movieManagerImpl.findById(movie.getId()).getIsLent());
+            }
+            final List<LendHistory> lent = movieManagerImpl.findAllLendHistoryByUser(user.getId());
+            assertEquals(3, lent.size());
+
+            //まとめて返却
+            movieManagerImpl.returnMovies(lent);
+            em.clear();
+            for (LendHistory history : movieManagerImpl.findAllLendHistoryByUser(user.getId())) {
+                assertNotNull(history.getReturnDate());
+            }
+            for (Movie movie : movies) {
+                assertFalse(movieManagerImpl.findById(movie.getId()).getIsLent());
+            }
+
+            //IDの順序によらず、重複したIDは2件目以降を貸出中として返す
+            final List<LendResult> relent = movieManagerImpl.lendMoviesById(
+                    Arrays.asList(movies.get(2).getId(), movies.get(0).getId(), movies.get(2).getId()), user);
+            assertEquals(3, relent.size());
+            assertEquals(movies.get(2).getId(), relent.get(0).getMovieId());
+            assertEquals(LendResult.Status.LENT, relent.get(0).getStatus());
+            assertEquals(LendResult.Status.LENT, relent.get(1).getStatus());
+            assertEquals(LendResult.Status.ALREADY_LENT, relent.get(2).getStatus());
+        } finally {
+            em.clear();
+            if (user != null) {
+                userManagerImpl.removeUser(user);
+            }
+            for (Movie movie : movies) {
+                movieManagerImpl.removeMovie(movie);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveUsersById() {
+
+        Movie movie = null;
+        try {
+            movie = movieManagerImpl.createMovie("movie8title");
+            final User user1 = userManagerImpl.createUser("user4", "user4");
+            final User user2 = userManagerImpl.createUser("user5", "user5");
+            final LendHistory history = movieManagerImpl.lendMovie(movie, user1);
+            em.flush();
+
+            //まとめて削除
+            assertEquals(2, userManagerImpl.removeUsersById(Arrays.asList(user1.getId(), user2.getId())));
+            assertNull(userManagerImpl.findByAccount("user4"));
+            assertNull(userManagerImpl.findByAccount("user5"));
+
+            //履歴は残り、ユーザだけが外れる
+            final LendHistory history1 = movieManagerImpl.findLendHistoryById(history.getId());
+            assertNotNull(history1);
+            assertNull(history1.getLendUser());
+        } finally {
+            if (movie != null) {
+                movieManagerImpl.removeMovie(movie);
+            }
+        }
+    }
+
+    @Test
+    public void testFindByIds() {
+
+        final List<Movie> movies = new ArrayList<>();
+        User user = null;
+        try {
+            for (int i = 0; i < 3; i++) {
+                movies.add(movieManagerImpl.createMovie("movie10title" + i));
+            }
+            user = userManagerImpl.createUser("user7", "user7");
+            em.flush();
+            em.clear();
+
+            //要求の順に返し、見つからないIDは含まない
+            final List<Long> ids = Arrays.asList(movies.get(2).getId(), -1L, movies.get(0).getId());
+            final Map<Long, Movie> found = movieManagerImpl.findByIds(ids);
+            assertEquals(Arrays.asList(movies.get(2).getId(), movies.get(0).getId()),
+                    new ArrayList<>(found.keySet()));
+            assertEquals("movie10title2", found.get(movies.get(2).getId()).getTitle());
+            //2回目はキャッシュから
+            assertEquals(2, movieManagerImpl.findByIds(ids).size());
+
+            final Map<Long, User> users = userManagerImpl.findByIds(Arrays.asList(user.getId(), -1L));
+            assertEquals(1, users.size());
+            assertEquals("user7", users.get(user.getId()).getAccount());
+        } finally {
+            em.clear();
+            if (user != null) {
+                userManagerImpl.removeUser(user);
+            }
+            for (Movie movie : movies) {
+                movieManagerImpl.removeMovie(movie);
+            }
+        }
+    }
+
+    @Test
+    public void testRows() {
+
+        Movie movie = null;
+        User user = null;
+        try {
+            movie = movieManagerImpl.createMovie("movie9title");
+            user = userManagerImpl.createUser("user6", "user6");
+            movieManagerImpl.lendMoviesById(Arrays.asList(movie.getId()), user);
+            em.flush();
+            em.clear();
+
+            //一覧の列だけを読み込む
+            final MovieSearchCondition condition = new MovieSearchCondition();
+            condition.setTitle("movie9title");
+            final List<MovieRow> movies = movieManagerImpl.searchMovieRows(condition, null, 0, 10);
+            assertEquals(1, movies.size());
+            assertEquals(movie.getId(), movies.get(0).getId());
+            assertTrue(movies.get(0).getIsLent());
+
+            final List<LendHistoryRow> histories = movieManagerImpl.findLendHistoryRowsByUser(user.getId());
+            assertEquals(1, histories.size());
+            assertEquals("movie9title", histories.get(0).getMovieTitle());
+            assertNull(histories.get(0).getReturnDate());
+
+            //IDでまとめて返却
+            assertEquals(1, movieManagerImpl.returnMoviesById(Arrays.asList(histories.get(0).getId())));
+            assertNotNull(movieManagerImpl.findLendHistoryRowsByUser(user.getId()).get(0).getReturnDate());
+            assertFalse(movieManagerImpl.findById(movie.getId()).getIsLent());
+            //返却済みの履歴は対象外
+            assertEquals(0, movieManagerImpl.returnMoviesById(Arrays.asList(histories.get(0).getId())));
+        } finally {
+            em.clear();
+            if (user != null) {
+                userManagerImpl.removeUser(user);
+            }
+            if (movie != null) {
+                movieManagerImpl.removeMovie(movie);
+            }
+        }
+    }
+
+    @Test
+    public void testSeekNullSortValue() {
+
+        final List<Movie> movies = new ArrayList<>();
+        try {
+            //カテゴリがnullの映画を含めて、1件ずつのページで全件を読めること
+            for (String category : new String[] { null, "c1", null, "c2" }) {
+                final Movie movie = movieManagerImpl.createMovie("movie11title");
+                movie.setCategory(category);
+                movies.add(movie);
+            }
+            em.flush();
+            em.clear();
+
+            for (boolean ascending : new boolean[] { true, false }) {
+                final MovieSearchCondition condition = new MovieSearchCondition();
+                condition.setTitle("movie11title");
+                condition.setSortField("category");
+                condition.setAscending(ascending);
+                final List<Long> ids = new ArrayList<>();
+                MovieSeekKey after = null;
+                for (int page = 0; page < movies.size() + 1; page++) {
+                    final List<MovieRow> rows = movieManagerImpl.searchMovieRows(condition, after, page, 1);
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    ids.add(rows.get(0).getId());
+                    after = MovieSeekKey.of(rows.get(0), "category");
+                }
+                assertEquals(movies.size(), ids.size());
+                assertEquals(movies.size(), ids.stream().distinct().count());
+                //昇順ではnullが先頭、降順では末尾（同じ値の中はid順）
+                if (ascending) {
+                    assertEquals(Arrays.asList(movies.get(0).getId(), movies.get(2).getId()), ids.subList(0, 2));
+                } else {
+                    assertEquals(Arrays.asList(movies.get(2).getId(), movies.get(0).getId()), ids.subList(2, 4));
+                }
+            }
+        } finally {
+            em.clear();
+            for (Movie movie : movies) {
+                movieManagerImpl.removeMovie(movie);
+            }
+        }
+    }
 }
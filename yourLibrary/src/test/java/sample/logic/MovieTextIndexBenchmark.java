@@ -0,0 +1,156 @@
+package sample.logic;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import sample.entity.Movie;
+import sample.logic.index.NGramIndex;
+
+/**
+ * タイトル部分一致検索のベンチマーク。NGramIndexとCriteria API（LIKE '%x%'）を比較します。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.logic.MovieTextIndexBenchmark 100000 1000000
+ * </pre>
+ * -Dbench.db=true を指定した場合のみ、yourlibrary-test のMOVIEを作り直してDB側も計測します。
+ */
+public class MovieTextIndexBenchmark {
+
+    private static final String[] WORDS = { "star", "wars", "love", "night", "city", "dragon", "ghost", "summer",
+            "king", "queen", "river", "space", "time", "last", "first", "dark", "light", "story", "hero", "road",
+            "星", "夜", "物語", "東京", "恋", "海", "風", "旅", "夢", "花" };
+
+    private static final String[] QUERIES = { "star", "dragon king", "物語", "ght", "rive", "space time 12",
+            "xyz" };
+
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[] { 100000, 1000000 } : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        boolean db = Boolean.getBoolean("bench.db");
+
+        for (int size : sizes) {
+            System.out.println("=== " + size + " movies ===");
+            String[] titles = createTitles(size);
+            benchIndex(titles);
+            if (db) {
+                benchDatabase(titles);
+            }
+        }
+    }
+
+    private static String[] createTitles(int size) {
+        Random random = new Random(size);
+        String[] titles = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder sb = new StringBuilder();
+            int words = 2 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            titles[i] = sb.append(i % 1000).toString();
+        }
+        return titles;
+    }
+
+    private static void benchIndex(String[] titles) {
+        NGramIndex index = new NGramIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < titles.length; i++) {
+            index.put(i + 1, titles[i]);
+        }
+        System.out.printf("index build: %d ms%n", (System.nanoTime() - start) / 1000000);
+
+        for (String query : QUERIES) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                index.search(query);
+            }
+            long begin = System.nanoTime();
+            int hits = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                hits = index.search(query).size();
+            }
+            System.out.printf("index  \"%s\": %8.3f ms/query, %d hits%n", query,
+                    (System.nanoTime() - begin) / 1e6 / ITERATIONS, hits);
+        }
+    }
+
+    private static void benchDatabase(String[] titles) throws Exception {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("yourlibrary-test");
+        seed(emf.getProperties(), titles);
+
+        EntityManager em = emf.createEntityManager();
+        MovieManagerImpl movieManager = new MovieManagerImpl();
+        movieManager.setEm(em);
+
+        //Criteria API（LIKE）
+        for (String query : QUERIES) {
+            benchSearch("like   ", movieManager, query);
+        }
+
+        //インデックスでIDに解決してからDBで取得
+        MovieTextIndex textIndex = new MovieTextIndex();
+        textIndex.setEm(em);
+        textIndex.onStartup(null);
+        movieManager.setTextIndex(textIndex);
+        for (String query : QUERIES) {
+            benchSearch("index+db", movieManager, query);
+        }
+
+        em.close();
+        emf.close();
+    }
+
+    private static void benchSearch(String label, MovieManagerImpl movieManager, String query) {
+        int iterations = 5;
+        movieManager.searchMovie(query, null, null, null);
+        long begin = System.nanoTime();
+        List<Movie> result = null;
+        for (int i = 0; i < iterations; i++) {
+            result = movieManager.searchMovie(query, null, null, null);
+            movieManager.getEm().clear();
+        }
+        System.out.printf("%s \"%s\": %8.3f ms/query, %d hits%n", label, query,
+                (System.nanoTime() - begin) / 1e6 / iterations, result.size());
+    }
+
+    //JDBCのバッチでMOVIEを作り直す
+    private static void seed(Map<String, Object> properties, String[] titles) throws Exception {
+        try (Connection con = DriverManager.getConnection(
+                properties.get("javax.persistence.jdbc.url") + "?rewriteBatchedStatements=true",
+                (String) properties.get("javax.persistence.jdbc.user"),
+                (String) properties.get("javax.persistence.jdbc.password"))) {
+            con.setAutoCommit(false);
+            try (Statement st = con.createStatement()) {
+                st.executeUpdate("DELETE FROM LEND_HISTORY");
+                st.executeUpdate("DELETE FROM MOVIE_IMAGE");
+                st.executeUpdate("DELETE FROM MOVIE");
+            }
+            try (PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO MOVIE (ID, TITLE, OUTLINE, CATEGORY, IS_LENT, IMAGE) VALUES (?, ?, '', '', 0, '')")) {
+                for (int i = 0; i < titles.length; i++) {
+                    ps.setLong(1, i + 1);
+                    ps.setString(2, titles[i]);
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            con.commit();
+        }
+    }
+
+}
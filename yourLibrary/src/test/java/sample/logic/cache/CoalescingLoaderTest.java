@@ -0,0 +1,163 @@
+package sample.logic.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import sample.entity.Movie;
+
+@RunWith(JUnit4.class)
+public class CoalescingLoaderTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    //読み込んだIDの延べ件数
+    private final AtomicInteger loadedIds = new AtomicInteger();
+
+    //読み込みにかかる時間（ミリ秒）
+    private long loadMillis;
+
+    private Map<Long, Movie> load(Collection<Long> ids) {
+        loads.incrementAndGet();
+        if (loadMillis > 0) {
+            try {
+                Thread.sleep(loadMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        loadedIds.addAndGet(ids.size());
+        Map<Long, Movie> result = new HashMap<>();
+        for (Long id : ids) {
+            if (id > 0) {
+                Movie movie = new Movie();
+                movie.setId(id);
+                movie.setTitle("title" + id);
+                result.put(id, movie);
+            }
+        }
+        return result;
+    }
+
+    private static Movie copyOf(Movie movie) {
+        Movie copy = new Movie();
+        copy.setId(movie.getId());
+        copy.setTitle(movie.getTitle());
+        return copy;
+    }
+
+    @Test
+    public void testLoad() {
+        CoalescingLoader<Movie> loader = new CoalescingLoader<>(0, TimeUnit.MILLISECONDS, this::load,
+                CoalescingLoaderTest::copyOf);
+        Map<Long, Movie> result = loader.load(Arrays.asList(3L, -1L, 1L));
+        assertEquals(Arrays.asList(3L, 1L), new ArrayList<>(result.keySet()));
+        assertEquals("title3", result.get(3L).getTitle());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testNoWaitWhenIdle() {
+        //他に読み込み中の要求がなければ、windowを待たない
+        CoalescingLoader<Movie> loader = new CoalescingLoader<>(10, TimeUnit.SECONDS, this::load,
+                CoalescingLoaderTest::copyOf);
+        long start = System.nanoTime();
+        assertEquals(1, loader.load(Arrays.asList(1L)).size());
+        assertEquals(1, loader.load(Arrays.asList(2L)).size());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        //最初の要求はすぐに読み込み、その読み込み中に来た要求をまとめる
+        loadMillis = 200;
+        CoalescingLoader<Movie> loader = new CoalescingLoader<>(100, TimeUnit.MILLISECONDS, this::load,
+                CoalescingLoaderTest::copyOf);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Map<Long, Movie>>> futures = new ArrayList<>();
+            for (int i = 1; i <= threads; i++) {
+                long id = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    //全員が100を要求する
+                    return loader.load(Arrays.asList(id, 100L));
+                }));
+            }
+            start.countDown();
+            List<Movie> shared = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Map<Long, Movie> result = futures.get(i).get(10, TimeUnit.SECONDS);
+                assertEquals("title" + (i + 1), result.get((long) i + 1).getTitle());
+                shared.add(result.get(100L));
+            }
+            //同時の要求はまとめて読み込む
+            assertTrue(loads.get() < threads);
+            assertEquals(loads.get(), loader.getBatchCount());
+            assertEquals(threads, loader.getRequestCount());
+            //100は読み込みごとに1回まで
+            assertTrue(loadedIds.get() <= threads + loads.get());
+            //結果は呼び出し側ごとのコピー
+            assertNotSame(shared.get(0), shared.get(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        AtomicInteger calls = new AtomicInteger();
+        CoalescingLoader<Movie> loader = new CoalescingLoader<>(0, TimeUnit.MILLISECONDS, ids -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("db down");
+            }
+            return load(ids);
+        }, CoalescingLoaderTest::copyOf);
+        try {
+            loader.load(Arrays.asList(1L));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("db down", e.getMessage());
+        }
+        //失敗した読み込みは残らず、次の要求で読み直す
+        assertEquals(1, loader.load(Arrays.asList(1L)).size());
+    }
+
+    @Test
+    public void testError() {
+        AtomicInteger calls = new AtomicInteger();
+        CoalescingLoader<Movie> loader = new CoalescingLoader<>(0, TimeUnit.MILLISECONDS, ids -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new OutOfMemoryError("heap");
+            }
+            return load(ids);
+        }, CoalescingLoaderTest::copyOf);
+        try {
+            loader.load(Arrays.asList(1L, 2L));
+            fail();
+        } catch (OutOfMemoryError e) {
+            assertEquals("heap", e.getMessage());
+        }
+        //Errorの場合も読み込み中のまま残らない（次の要求が待ち続けない）
+        assertEquals(2, loader.load(Arrays.asList(1L, 2L)).size());
+    }
+
+}
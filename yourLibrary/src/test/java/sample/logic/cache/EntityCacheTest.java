@@ -0,0 +1,211 @@
+package sample.logic.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import sample.entity.Movie;
+
+@RunWith(JUnit4.class)
+public class EntityCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private EntityCache<Movie> createCache(int maxSize) {
+        return new EntityCache<>("test", maxSize, 10, TimeUnit.SECONDS, EntityCacheTest::copyOf, Movie::getTitle,
+                now::get);
+    }
+
+    private static Movie copyOf(Movie movie) {
+        Movie copy = new Movie();
+        copy.setId(movie.getId());
+        copy.setTitle(movie.getTitle());
+        return copy;
+    }
+
+    private final LongFunction<Movie> loader = id -> {
+        loads.incrementAndGet();
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle("title" + id);
+        return movie;
+    };
+
+    @Test
+    public void testHitAndMiss() {
+        EntityCache<Movie> cache = createCache(10);
+        Movie first = cache.get(1, loader);
+        Movie second = cache.get(1, loader);
+        assertEquals(1, loads.get());
+        assertEquals("title1", second.getTitle());
+        //呼び出し側が変更してもキャッシュには影響しない
+        assertNotSame(first, second);
+        second.setTitle("changed");
+        assertEquals("title1", cache.get(1, loader).getTitle());
+
+        //自然キーでも引ける
+        assertEquals(1, cache.getByNaturalKey("title1", key -> null).getId());
+        assertNull(cache.getByNaturalKey("title2", key -> null));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testMissReturnsCopy() {
+        //読み込んだ直後もキャッシュから取得した時と同じく、コピー（copyOfに含まれない値はない）を返す
+        EntityCache<Movie> cache = createCache(10);
+        LongFunction<Movie> withOutline = id -> {
+            Movie movie = loader.apply(id);
+            movie.setOutline("outline");
+            return movie;
+        };
+        assertNull(cache.get(1, withOutline).getOutline());
+        assertNull(cache.get(1, withOutline).getOutline());
+        assertNull(cache.getByNaturalKey("title2", key -> withOutline.apply(2)).getOutline());
+        assertNull(cache.getAll(Arrays.asList(3L), ids -> Collections.singletonMap(3L, withOutline.apply(3)))
+                .get(3L).getOutline());
+    }
+
+    @Test
+    public void testInvalidate() {
+        EntityCache<Movie> cache = createCache(10);
+        cache.get(1, loader);
+        cache.invalidate(1);
+        assertNull(cache.getByNaturalKey("title1", key -> null));
+        cache.get(1, loader);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testEviction() {
+        EntityCache<Movie> cache = createCache(2);
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(1, loader);
+        //最も使われていない2が追い出される
+        cache.get(3, loader);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        cache.get(1, loader);
+        assertEquals(3, loads.get());
+        cache.get(2, loader);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testExpire() {
+        EntityCache<Movie> cache = createCache(10);
+        cache.get(1, loader);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        cache.get(1, loader);
+        assertEquals(1, loads.get());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        cache.get(1, loader);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testGetAll() {
+        EntityCache<Movie> cache = createCache(10);
+        cache.get(2, loader);
+        List<Collection<Long>> batches = new ArrayList<>();
+        Map<Long, Movie> result = cache.getAll(Arrays.asList(3L, 2L, 1L, 3L, 9L), ids -> {
+            batches.add(new ArrayList<>(ids));
+            Map<Long, Movie> loaded = new HashMap<>();
+            for (Long id : ids) {
+                if (id != 9) {
+                    loaded.put(id, loader.apply(id));
+                }
+            }
+            return loaded;
+        });
+        //キャッシュにないものだけを1回で読み込み、要求の順に返す（見つからないものは除く）
+        assertEquals(Arrays.asList(Arrays.asList(3L, 1L, 9L)), batches);
+        assertEquals(Arrays.asList(3L, 2L, 1L), new ArrayList<>(result.keySet()));
+        assertEquals("title1", result.get(1L).getTitle());
+
+        //読み込んだものはキャッシュされる
+        assertEquals(2, cache.getAll(Arrays.asList(1L, 3L), ids -> {
+            throw new AssertionError();
+        }).size());
+    }
+
+    //トランザクション中（afterCompletionは呼ばない）
+    private static class ActiveTransaction implements TransactionSynchronizationRegistry {
+        private final Map<Object, Object> resources = new HashMap<>();
+
+        public Object getTransactionKey() {
+            return this;
+        }
+
+        public void putResource(Object key, Object value) {
+            resources.put(key, value);
+        }
+
+        public Object getResource(Object key) {
+            return resources.get(key);
+        }
+
+        public void registerInterposedSynchronization(Synchronization sync) {
+        }
+
+        public int getTransactionStatus() {
+            return Status.STATUS_ACTIVE;
+        }
+
+        public void setRollbackOnly() {
+        }
+
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+
+    @Test
+    public void testWrittenTransaction() {
+        EntityCache<Movie> cache = createCache(10);
+        ActiveTransaction tx = new ActiveTransaction();
+        //更新前に読んだ値はキャッシュする
+        cache.get(1, tx, loader);
+        cache.markWritten(tx);
+
+        //更新したトランザクションで読んだ値（コミット前の値を含む）はキャッシュしない
+        cache.get(2, tx, loader);
+        cache.getByNaturalKey("title3", tx, key -> loader.apply(3));
+        cache.getAll(Arrays.asList(4L), tx, ids -> {
+            Map<Long, Movie> loaded = new HashMap<>();
+            loaded.put(4L, loader.apply(4));
+            return loaded;
+        });
+        assertEquals(4, loads.get());
+        assertEquals(1, cache.getSize());
+
+        //他のトランザクションからは読み込み直す
+        cache.get(2, loader);
+        assertEquals(5, loads.get());
+        assertEquals(2, cache.getSize());
+    }
+
+}
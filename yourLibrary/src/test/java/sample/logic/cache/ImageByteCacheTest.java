@@ -0,0 +1,85 @@
+package sample.logic.cache;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ImageByteCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private byte[] load(int length, int value) {
+        loads.incrementAndGet();
+        final byte[] data = new byte[length];
+        data[0] = (byte) value;
+        return data;
+    }
+
+    @Test
+    public void testGet() {
+        final ImageByteCache cache = new ImageByteCache(1000);
+        final ByteBuffer first = cache.get("a", () -> load(100, 1));
+        assertTrue(first.isDirect());
+        assertTrue(first.isReadOnly());
+        assertEquals(100, first.remaining());
+        assertEquals(1, first.get(0));
+
+        //2回目は読み込まない。バッファの位置は呼び出しごとに独立
+        first.position(50);
+        final ByteBuffer second = cache.get("a", () -> load(100, 2));
+        assertEquals(100, second.remaining());
+        assertEquals(1, second.get(0));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+        assertEquals(100, cache.getResidentBytes());
+
+        assertArrayEquals(load(100, 1), cache.getBytes("a", () -> null));
+    }
+
+    @Test
+    public void testEviction() {
+        final ImageByteCache cache = new ImageByteCache(1000);
+        cache.get("a", () -> load(100, 1));
+        cache.get("b", () -> load(100, 2));
+        for (int i = 0; i < 8; i++) {
+            cache.get("c" + i, () -> load(100, 3));
+        }
+        assertEquals(1000, cache.getResidentBytes());
+
+        //aを使うと、次はbが追い出される
+        cache.get("a", () -> load(100, 1));
+        cache.get("d", () -> load(100, 4));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1000, cache.getResidentBytes());
+        loads.set(0);
+        cache.get("a", () -> load(100, 1));
+        assertEquals(0, loads.get());
+        cache.get("b", () -> load(100, 2));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testLargeAndMissing() {
+        final ImageByteCache cache = new ImageByteCache(1000);
+        //上限の1/8を超えるものはキャッシュしない
+        assertEquals(200, cache.get("large", () -> load(200, 1)).remaining());
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getResidentBytes());
+
+        assertNull(cache.get("missing", () -> null));
+        assertEquals(0, cache.getSize());
+
+        cache.get("a", () -> load(100, 1));
+        cache.clear();
+        assertEquals(0, cache.getResidentBytes());
+    }
+
+}
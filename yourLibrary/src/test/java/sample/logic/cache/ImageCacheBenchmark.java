@@ -0,0 +1,121 @@
+package sample.logic.cache;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * 多数のセッションがカートを表示した場合のGC負荷の比較。
+ * 画面ごとに画像のコピーを持つ方法（以前のMovieCartView.contents）と、共有のImageByteCacheを比べます。
+ * <pre>
+ * java -Xmx1g -XX:MaxDirectMemorySize=256m -cp target/test-classes:target/classes:(依存jar) \
+ *     sample.logic.cache.ImageCacheBenchmark 500 10 100
+ * </pre>
+ * 引数はセッション数、カートの映画数、画像のサイズ（KB）です。
+ */
+public class ImageCacheBenchmark {
+
+    //ポスターの種類
+    private static final int POSTERS = 50;
+
+    //1セッションあたりのカート表示回数
+    private static final int RENDERS = 5;
+
+    public static void main(String[] args) {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int cartSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int imageKb = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        //DBの画像。読み込みのたびにコピーを返す（JDBCと同じ）
+        byte[][] database = new byte[POSTERS][];
+        Random random = new Random(1);
+        for (int i = 0; i < POSTERS; i++) {
+            database[i] = new byte[imageKb * 1024];
+            random.nextBytes(database[i]);
+        }
+
+        System.out.printf("%d sessions x %d movies, %d KB images%n", sessions, cartSize, imageKb);
+        run("per-view copies", () -> perViewCopies(database, sessions, cartSize));
+        run("shared off-heap", () -> sharedCache(database, sessions, cartSize));
+    }
+
+    //画面ごとに Map<String, byte[]> を持つ。セッションが生きている間、コピーはヒープに残る
+    private static Object perViewCopies(byte[][] database, int sessions, int cartSize) {
+        List<Map<String, byte[]>> views = new ArrayList<>();
+        long written = 0;
+        for (int s = 0; s < sessions; s++) {
+            Map<String, byte[]> contents = new HashMap<>();
+            views.add(contents);
+            for (int r = 0; r < RENDERS; r++) {
+                for (int m = 0; m < cartSize; m++) {
+                    int id = (s * 7 + m) % POSTERS;
+                    byte[] image = contents.computeIfAbsent(String.valueOf(id), key -> database[id].clone());
+                    written += image.length;
+                }
+            }
+        }
+        return new Object[] { views, written };
+    }
+
+    //全セッションで共有するキャッシュ。画面はIDだけを持つ
+    private static Object sharedCache(byte[][] database, int sessions, int cartSize) {
+        ImageByteCache cache = new ImageByteCache(64L * 1024 * 1024);
+        List<long[]> views = new ArrayList<>();
+        long written = 0;
+        for (int s = 0; s < sessions; s++) {
+            long[] ids = new long[cartSize];
+            views.add(ids);
+            for (int r = 0; r < RENDERS; r++) {
+                for (int m = 0; m < cartSize; m++) {
+                    int id = (s * 7 + m) % POSTERS;
+                    ids[m] = id;
+                    ByteBuffer image = cache.get("poster" + id, () -> database[id].clone());
+                    written += image.remaining();
+                }
+            }
+        }
+        System.out.printf("  cache: hitRatio=%.3f resident=%d KB evictions=%d%n", cache.getHitRatio(),
+                cache.getResidentBytes() / 1024, cache.getEvictionCount());
+        return new Object[] { views, written, cache };
+    }
+
+    private static void run(String label, Supplier<Object> body) {
+        System.gc();
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long start = System.nanoTime();
+        Object retained = body.get();
+        long elapsed = System.nanoTime() - start;
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("%-16s %6d ms, GC %4d times / %5d ms, heap after GC %6d MB%n", label,
+                elapsed / 1000000, gcCount() - gcCount, gcTime() - gcTime, heap / 1024 / 1024);
+        //計測が終わるまで画面の状態を保持する
+        if (retained.hashCode() == 42) {
+            System.out.println();
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += gc.getCollectionTime();
+        }
+        return time;
+    }
+
+}
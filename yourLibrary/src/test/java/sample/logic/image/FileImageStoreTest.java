@@ -0,0 +1,84 @@
+package sample.logic.image;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FileImageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileImageStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new FileImageStore(folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testPutAndRead() throws Exception {
+        final byte[] data = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+        final String hash = store.put(data);
+        assertEquals(ContentHash.sha256Hex(data), hash);
+
+        //ハッシュの先頭でディレクトリを分ける
+        final Path path = store.pathOf(hash, null);
+        assertEquals(hash.substring(0, 2), path.getParent().getParent().getFileName().toString());
+        assertTrue(Files.exists(path));
+
+        assertEquals(8, store.length(hash, null));
+        assertArrayEquals(data, store.read(hash, null));
+
+        //同じ内容は一つだけ
+        assertEquals(hash, store.put(data.clone()));
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        final byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final String hash = store.put(data);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(10, store.transferTo(hash, null, 20, 10, Channels.newChannel(out)));
+        assertArrayEquals(new byte[] { 20, 21, 22, 23, 24, 25, 26, 27, 28, 29 }, out.toByteArray());
+
+        //末尾を超える分は書き出さない
+        out.reset();
+        assertEquals(5, store.transferTo(hash, null, 95, 10, Channels.newChannel(out)));
+    }
+
+    @Test
+    public void testVariantAndDelete() throws Exception {
+        final String hash = store.put(new byte[] { 9, 9, 9 });
+        assertEquals(-1, store.length(hash, ThumbnailSize.MEDIUM));
+        assertNull(store.read(hash, ThumbnailSize.MEDIUM));
+
+        store.putVariant(hash, ThumbnailSize.MEDIUM, new byte[] { 1 });
+        assertArrayEquals(new byte[] { 1 }, store.read(hash, ThumbnailSize.MEDIUM));
+
+        store.delete(hash);
+        assertEquals(-1, store.length(hash, null));
+        assertEquals(-1, store.length(hash, ThumbnailSize.MEDIUM));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHash() throws Exception {
+        store.read("../../etc/passwd", null);
+    }
+
+}
@@ -0,0 +1,92 @@
+package sample.logic.image;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PosterUploadServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PosterUploadService service;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new PosterUploadService(folder.getRoot().toPath(), 1024 * 1024);
+    }
+
+    @Test
+    public void testStage() throws Exception {
+        final byte[] data = png(300, 200);
+        final Path staged = service.stage(new ByteArrayInputStream(data));
+        assertArrayEquals(data, Files.readAllBytes(staged));
+
+        //一時ファイルから縮小版を作れる
+        final Map<ThumbnailSize, byte[]> thumbnails = new ThumbnailService().renderFile(staged);
+        assertEquals(2, thumbnails.size());
+    }
+
+    @Test
+    public void testNotImage() throws Exception {
+        try {
+            service.stage(new ByteArrayInputStream("<html></html>".getBytes("UTF-8")));
+            fail();
+        } catch (InvalidImageException e) {
+            //一時ファイルは残さない
+            assertEquals(0, countStaged());
+        }
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        //先頭はPNG、途中で上限を超える
+        final byte[] data = new byte[2 * 1024 * 1024];
+        System.arraycopy(png(1, 1), 0, data, 0, 16);
+        try {
+            service.stage(new ByteArrayInputStream(data));
+            fail();
+        } catch (InvalidImageException e) {
+            assertEquals(0, countStaged());
+        }
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testEmpty() throws Exception {
+        service.stage(new ByteArrayInputStream(new byte[0]));
+    }
+
+    private int countStaged() {
+        final File[] files = folder.getRoot().listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,76 @@
+package sample.logic.image;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ThumbnailServiceTest {
+
+    private final ThumbnailService thumbnailService = new ThumbnailService();
+
+    @Test
+    public void testRender() throws Exception {
+        final byte[] original = png(1200, 800);
+        final Map<ThumbnailSize, byte[]> thumbnails = thumbnailService.render(original);
+        assertEquals(3, thumbnails.size());
+
+        //長辺を合わせて縦横比を保つ
+        final BufferedImage medium = ImageIO.read(new ByteArrayInputStream(thumbnails.get(ThumbnailSize.MEDIUM)));
+        assertEquals(200, medium.getWidth());
+        assertEquals(133, medium.getHeight());
+        final BufferedImage small = ImageIO.read(new ByteArrayInputStream(thumbnails.get(ThumbnailSize.SMALL)));
+        assertEquals(64, small.getWidth());
+
+        //カート表示の縮小版は元画像より一桁小さい
+        assertTrue(thumbnails.get(ThumbnailSize.MEDIUM).length * 10 < original.length);
+    }
+
+    @Test
+    public void testSmallOriginal() throws Exception {
+        //元画像より大きい縮小版は作らない
+        final Map<ThumbnailSize, byte[]> thumbnails = thumbnailService.render(png(100, 150));
+        assertEquals(1, thumbnails.size());
+        assertTrue(thumbnails.containsKey(ThumbnailSize.SMALL));
+    }
+
+    @Test
+    public void testNotImage() {
+        assertTrue(thumbnailService.render(new byte[] { 1, 2, 3, 4 }).isEmpty());
+        assertTrue(thumbnailService.render(null).isEmpty());
+    }
+
+    @Test
+    public void testFitting() {
+        assertEquals(ThumbnailSize.SMALL, ThumbnailSize.fitting(32));
+        assertEquals(ThumbnailSize.MEDIUM, ThumbnailSize.fitting(200));
+        assertEquals(ThumbnailSize.LARGE, ThumbnailSize.fitting(201));
+        assertNull(ThumbnailSize.fitting(401));
+    }
+
+    //写真に近い（圧縮しにくい）画像
+    private static byte[] png(int width, int height) throws Exception {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Random random = new Random(width);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, new Color(x * 255 / width, y * 255 / height, random.nextInt(64)).getRGB());
+            }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,49 @@
+package sample.logic.index;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NGramIndexTest {
+
+    private static long[] sorted(long[] ids) {
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void testSearch() {
+        NGramIndex index = new NGramIndex();
+        index.put(1, "Star Wars");
+        index.put(2, "スター・ウォーズ");
+        index.put(3, "Wars of the Stars");
+
+        //部分一致（大文字・小文字は区別しない）
+        assertArrayEquals(new long[] { 1, 3 }, sorted(index.search("star").toArray()));
+        assertArrayEquals(new long[] { 2 }, sorted(index.search("ウォー").toArray()));
+        //1文字
+        assertArrayEquals(new long[] { 2 }, sorted(index.search("ス").toArray()));
+        //バイグラムは揃っているが連続していない
+        assertEquals(0, index.search("rsta").size());
+        assertEquals(0, index.search("xyz").size());
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        NGramIndex index = new NGramIndex();
+        index.put(1, "Star Wars");
+        index.put(1, "Star Trek");
+        assertEquals(0, index.search("wars").size());
+        assertArrayEquals(new long[] { 1 }, index.search("trek").toArray());
+
+        index.remove(1);
+        assertEquals(0, index.search("star").size());
+        assertEquals(0, index.size());
+    }
+
+}
@@ -0,0 +1,50 @@
+package sample.logic.index;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SuggestionIndexTest {
+
+    @Test
+    public void testComplete() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.add("Action");
+        index.add("Action");
+        index.add("Anime");
+        index.add("Adventure");
+        index.add("Drama");
+        index.add("action");
+
+        //前方一致を出現数の多い順（同数なら値の順）に、足りない分を部分一致で補う
+        assertEquals(Arrays.asList("Action", "Adventure", "Anime", "Drama"), index.complete("", 10));
+        assertEquals(Arrays.asList("Action", "Adventure"), index.complete("a", 2));
+        assertEquals(Arrays.asList("Drama", "Adventure"), index.complete("d", 10));
+        assertEquals(Arrays.asList("Anime"), index.complete("nim", 10));
+        assertTrue(index.complete("xyz", 10).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testRemove() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.add("Action");
+        index.add("Action");
+        index.add("Anime");
+
+        index.remove("Action");
+        assertEquals(Arrays.asList("Action", "Anime"), index.complete("a", 10));
+        index.remove("Action");
+        assertEquals(Arrays.asList("Anime"), index.complete("a", 10));
+        //登録されていない値は無視する
+        index.remove("Drama");
+        index.remove(null);
+        assertEquals(1, index.size());
+    }
+
+}
@@ -0,0 +1,121 @@
+package sample.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RunWith(JUnit4.class)
+public class JsonObjectDumpTest {
+
+    public static class Node {
+        public String name;
+        public Node child;
+
+        Node(String name, Node child) {
+            this.name = name;
+            this.child = child;
+        }
+    }
+
+    public static class Large {
+        public List<String> values = new ArrayList<>();
+    }
+
+    public static class Wide {
+        public Node deep;
+        public List<Object> nested;
+        public String after = "after";
+    }
+
+    @Test
+    public void testDump() {
+        final String json = JsonObjectDump.getJsonString(new Node("a", new Node("b", null)));
+        assertTrue(json.contains("\"name\" : \"b\""));
+        //文字列・数値はそのまま出力するため対象外
+        assertNull(JsonObjectDump.getJsonString("text"));
+        assertNull(JsonObjectDump.getJsonString(1L));
+        assertNull(JsonObjectDump.getJsonString(null));
+        assertFalse(JsonObjectDump.isDumpTarget("text"));
+        assertFalse(JsonObjectDump.isDumpTarget(Boolean.TRUE));
+        assertFalse(JsonObjectDump.isDumpTarget('c'));
+        assertFalse(JsonObjectDump.isDumpTarget(Thread.State.NEW));
+        assertFalse(JsonObjectDump.isDumpTarget(null));
+        assertTrue(JsonObjectDump.isDumpTarget(new Node("a", null)));
+    }
+
+    @Test
+    public void testMaxDepth() {
+        Node node = null;
+        for (int i = 0; i < 100; i++) {
+            node = new Node("n" + i, node);
+        }
+        //深い部分は「…」に置き換える（JSONとしては閉じている）
+        final String json = JsonObjectDump.getJsonString(node);
+        assertTrue(json.contains("n99"));
+        assertTrue(json.contains("n96"));
+        assertFalse(json.contains("n95"));
+        assertTrue(json.contains("\"child\" : \"…\""));
+        assertFalse(json.endsWith("(truncated)"));
+        assertValid(json);
+    }
+
+    @Test
+    public void testMaxDepthKeepsSiblings() throws Exception {
+        Node deep = null;
+        for (int i = 0; i < 10; i++) {
+            deep = new Node("n" + i, deep);
+        }
+        final Wide wide = new Wide();
+        wide.deep = deep;
+        List<Object> nested = new ArrayList<>();
+        nested.add("leaf");
+        for (int i = 0; i < 10; i++) {
+            List<Object> outer = new ArrayList<>();
+            outer.add(nested);
+            outer.add("level" + i);
+            nested = outer;
+        }
+        wide.nested = nested;
+        //深すぎる値の後のプロパティも出力する。配列も深さを数える
+        final String json = JsonObjectDump.getJsonString(wide);
+        assertTrue(json, json.contains("\"after\" : \"after\""));
+        assertTrue(json, json.contains("level9"));
+        assertFalse(json, json.contains("level0"));
+        assertFalse(json, json.contains("leaf"));
+        assertValid(json);
+    }
+
+    private static void assertValid(String json) {
+        try {
+            new ObjectMapper().readTree(json);
+        } catch (IOException e) {
+            fail(json + " " + e);
+        }
+    }
+
+    @Test
+    public void testMaxChars() {
+        final Large large = new Large();
+        for (int i = 0; i < 100000; i++) {
+            large.values.add("value" + i);
+        }
+        final String json = JsonObjectDump.getJsonString(large);
+        assertTrue(json.length() < 5000);
+        assertTrue(json.endsWith("(truncated)"));
+    }
+
+    @Test
+    public void testLazy() {
+        final Object lazy = JsonObjectDump.lazy(new Node("a", null));
+        assertTrue(lazy.toString().contains("\"name\" : \"a\""));
+    }
+
+}
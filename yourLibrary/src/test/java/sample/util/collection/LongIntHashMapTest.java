@@ -0,0 +1,79 @@
+package sample.util.collection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LongIntHashMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertTrue(map.isEmpty());
+        map.put(10, 1);
+        map.put(-3, 2);
+        map.put(Long.MAX_VALUE, 3);
+        assertEquals(3, map.size());
+        assertEquals(1, map.get(10, -1));
+        assertEquals(2, map.get(-3, -1));
+        assertEquals(3, map.get(Long.MAX_VALUE, -1));
+        assertEquals(-1, map.get(11, -1));
+        assertFalse(map.containsKey(11));
+
+        //既にあれば置き換える（件数は増えない）
+        map.put(10, 5);
+        assertEquals(5, map.get(10, -1));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void testZeroKey() {
+        //0は空きと区別して持つ
+        LongIntHashMap map = new LongIntHashMap();
+        assertFalse(map.containsKey(0));
+        assertEquals(-1, map.get(0, -1));
+        map.put(0, 7);
+        assertTrue(map.containsKey(0));
+        assertEquals(7, map.get(0, -1));
+        map.put(0, 8);
+        assertEquals(8, map.get(0, -1));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertFalse(map.containsKey(0));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testRehash() {
+        //初期の容量を超えて、衝突しやすい（下位ビットが同じ）キーを入れる
+        LongIntHashMap map = new LongIntHashMap(4);
+        int n = 10_000;
+        for (int i = 0; i < n; i++) {
+            map.put((long) i << 20, i);
+        }
+        assertEquals(n, map.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, map.get((long) i << 20, -1));
+        }
+        assertEquals(-1, map.get(1L << 19, -1));
+    }
+
+    @Test
+    public void testClear() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 1; i <= 100; i++) {
+            map.put(i, i);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        for (int i = 1; i <= 100; i++) {
+            assertFalse(map.containsKey(i));
+        }
+        map.put(5, 50);
+        assertEquals(50, map.get(5, -1));
+    }
+}
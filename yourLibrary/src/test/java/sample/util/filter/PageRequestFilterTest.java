@@ -0,0 +1,42 @@
+package sample.util.filter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import sample.util.filter.PageRequestFilter.Kind;
+
+@RunWith(JUnit4.class)
+public class PageRequestFilterTest {
+
+    @Test
+    public void testViewId() {
+        assertEquals("/view/movie/searchMovie.xhtml",
+                PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary/view/movie/searchMovie.xhtml"));
+        assertEquals("/view/movie/searchMovie.xhtml",
+                PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary/faces/view/movie/searchMovie.xhtml"));
+        assertEquals("/index.xhtml",
+                PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary/index.xhtml;jsessionid=1"));
+        assertEquals("/", PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary"));
+        assertEquals("/", PageRequestFilter.viewIdOf("", "/"));
+
+        //画面以外は先頭の階層にまとめる
+        assertEquals("/javax.faces.resource",
+                PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary/javax.faces.resource/theme.css.xhtml"));
+        assertEquals("/image", PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary/image/5/abc"));
+        assertEquals("/favicon.ico", PageRequestFilter.viewIdOf("/yourLibrary", "/yourLibrary/favicon.ico"));
+    }
+
+    @Test
+    public void testKind() {
+        assertEquals(Kind.PAGE, PageRequestFilter.kindOf("/index.xhtml", "GET", null));
+        assertEquals(Kind.POSTBACK, PageRequestFilter.kindOf("/index.xhtml", "POST", null));
+        assertEquals(Kind.AJAX, PageRequestFilter.kindOf("/index.xhtml", "POST", "partial/ajax"));
+        assertEquals(Kind.RESOURCE, PageRequestFilter.kindOf("/image", "GET", null));
+        assertEquals(Kind.RESOURCE, PageRequestFilter.kindOf("/javax.faces.resource", "GET", null));
+        assertEquals(Kind.PAGE, PageRequestFilter.kindOf("/", "GET", null));
+    }
+
+}
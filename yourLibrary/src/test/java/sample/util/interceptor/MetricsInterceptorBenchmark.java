@@ -0,0 +1,88 @@
+package sample.util.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+
+import sample.util.metrics.LatencyMetrics;
+import sample.util.metrics.MetricsRegistry;
+
+/**
+ * MetricsInterceptorの1回の呼び出しあたりのオーバーヘッド。
+ * 何もしないメソッドを、インターセプターなし・ありで呼び出し、スレッド数を変えて比べます。
+ * 時計を2回読む分（System.nanoTime）も別に測ります。値は1回あたりのCPU時間（経過時間 x 使えるCPU数 / 回数）です。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.util.interceptor.MetricsInterceptorBenchmark
+ * </pre>
+ */
+public class MetricsInterceptorBenchmark {
+
+    private static final int WARMUP = 2_000_000;
+
+    private static final int ITERATIONS = 20_000_000;
+
+    public static class Target {
+        public Object find(long id) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        MetricsRegistry registry = new MetricsRegistry(60, 6);
+        registry.start();
+        try {
+            MetricsInterceptor interceptor = new MetricsInterceptor();
+            interceptor.registry = registry;
+            Method method = Target.class.getMethod("find", long.class);
+            WithLogInterceptorBenchmark.Context context = new WithLogInterceptorBenchmark.Context(new Target(),
+                    method, new Object[] { 1L });
+
+            System.out.println("cpus=" + Runtime.getRuntime().availableProcessors());
+            System.out.println("threads\tdirect ns/op\tnanoTime x2 ns/op\tintercepted ns/op");
+            for (int threads : new int[] { 1, 4, 8 }) {
+                double direct = measure(threads, () -> context.proceed());
+                double clock = measure(threads, () -> System.nanoTime() - System.nanoTime());
+                double intercepted = measure(threads, () -> interceptor.invoke(context));
+                System.out.printf("%d\t%.1f\t%.1f\t%.1f%n", threads, direct, clock, intercepted);
+            }
+            LatencyMetrics metrics = registry.forMethod(Target.class, method);
+            System.out.printf("calls=%d p50=%dus p99=%dus%n", metrics.getCallCount(), metrics.getP50Micros(),
+                    metrics.getP99Micros());
+        } finally {
+            registry.stop();
+        }
+    }
+
+    private interface Call {
+        Object call() throws Exception;
+    }
+
+    //1回あたりのCPU時間（ナノ秒）
+    private static double measure(int threads, Call call) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            call.call();
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        call.call();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        int cpus = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        return (double) elapsed * cpus / threads / ITERATIONS;
+    }
+}
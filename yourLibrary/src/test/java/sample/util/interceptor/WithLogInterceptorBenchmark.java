@@ -0,0 +1,217 @@
+package sample.util.interceptor;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.interceptor.InvocationContext;
+
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import sample.util.IgnoreLogging;
+
+/**
+ * WithLogInterceptorの1回の呼び出しあたりのオーバーヘッドの比較。
+ * 以前の実装（呼び出しごとにメソッド名・アノテーションを調べ、引数の配列全体を毎回新しいObjectMapperでJSONにする）と、
+ * 現在の実装（メソッドの情報をキャッシュし、DEBUGでなければ何もしない）を比べます。
+ * DEBUGの場合は、ログの文字列を作る（出力はしない）アペンダーを付けて測ります。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.util.interceptor.WithLogInterceptorBenchmark
+ * </pre>
+ */
+public class WithLogInterceptorBenchmark {
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    //インターセプトされる業務メソッドの例
+    public static class Target {
+        public List<String> search(Condition condition, int page) {
+            return null;
+        }
+    }
+
+    public static class Condition {
+        public String title = "title";
+        public String category = "SF";
+        public Date from = new Date(0);
+        public List<Long> ids = new ArrayList<>();
+
+        Condition() {
+            for (long i = 0; i < 20; i++) {
+                ids.add(i);
+            }
+        }
+    }
+
+    //CDIのプロキシの代わり（スーパークラスが業務クラス）
+    public static class TargetProxy extends Target {
+    }
+
+    private static final org.slf4j.Logger oldLogger = LoggerFactory.getLogger(WithLogInterceptor.class);
+
+    public static void main(String[] args) throws Exception {
+        Method method = Target.class.getMethod("search", Condition.class, int.class);
+        InvocationContext ic = new Context(new TargetProxy(), method, new Object[] { new Condition(), 1 });
+        WithLogInterceptor interceptor = new WithLogInterceptor();
+
+        Logger logger = (Logger) LoggerFactory.getLogger(WithLogInterceptor.class);
+        logger.setAdditive(false);
+        FormattingAppender appender = new FormattingAppender();
+        appender.start();
+        logger.addAppender(appender);
+
+        System.out.printf("%-6s %14s %14s%n", "level", "before(ns/op)", "after(ns/op)");
+        for (Level level : new Level[] { Level.INFO, Level.DEBUG }) {
+            logger.setLevel(level);
+            int iterations = level == Level.DEBUG ? ITERATIONS / 20 : ITERATIONS;
+            double before = 0;
+            double after = 0;
+            for (int round = 0; round < 3; round++) {
+                before = measure(iterations, () -> oldInvoke(ic));
+                after = measure(iterations, () -> interceptor.invoke(ic));
+            }
+            System.out.printf("%-6s %14.0f %14.0f%n", level, before, after);
+        }
+        System.out.println("(formatted " + appender.chars + " chars)");
+    }
+
+    private interface Call {
+        Object call() throws Exception;
+    }
+
+    private static double measure(int iterations, Call call) throws Exception {
+        for (int i = 0; i < WARMUP / 10; i++) {
+            call.call();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            call.call();
+        }
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    //以前の実装
+    private static Object oldInvoke(InvocationContext ic) throws Exception {
+        String classAndMethod = ic.getTarget().getClass()
+                .getSuperclass().getName()
+                + "#" + ic.getMethod().getName();
+        Method method = ic.getMethod();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Annotation[] annotations = method.getAnnotations();
+        Object[] parameter = ic.getParameters();
+        boolean flg = true;
+        for (Annotation element : annotations) {
+            if (element instanceof IgnoreLogging) {
+                flg = false;
+            }
+        }
+        if (flg) {
+            oldLogger.debug(classAndMethod + " start>>");
+            int i = 0;
+            for (Class<?> parameterType : parameterTypes) {
+                oldLogger.debug("\t" + "[PARAMETER] " + parameterType.getName() + " ,[VALUE] " + parameter[i++]);
+                if (!"javax.faces.event.ActionEvent".equals(parameterType.getName())
+                        && oldGetJsonString(parameter) != null) {
+                    oldLogger.debug(oldGetJsonString(parameter));
+                }
+            }
+        }
+        Object ret = ic.proceed();
+        if (flg) {
+            oldLogger.debug(classAndMethod + " end<<");
+        }
+        return ret;
+    }
+
+    private static String oldGetJsonString(Object parameter) {
+        if (!parameter.getClass().isPrimitive() && !(parameter instanceof String)) {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.enable(SerializationFeature.INDENT_OUTPUT);
+            try {
+                return mapper.writeValueAsString(parameter);
+            } catch (JsonProcessingException e) {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    //ログの文字列を作るだけのアペンダー
+    private static class FormattingAppender extends AppenderBase<ILoggingEvent> {
+        long chars;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            chars += event.getFormattedMessage().length();
+        }
+    }
+
+    static class Context implements InvocationContext {
+        private final Object target;
+        private final Method method;
+        private Object[] parameters;
+        private final Map<String, Object> contextData = new HashMap<>();
+
+        Context(Object target, Method method, Object[] parameters) {
+            this.target = target;
+            this.method = method;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+            this.parameters = params;
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return contextData;
+        }
+
+        @Override
+        public Object proceed() throws Exception {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package sample.util.logging;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+
+/**
+ * ファイルへのログ出力のスループット。
+ * logback.xmlの設定（INFO/ERRORのFileAppenderへの同期出力、DEBUGのAsyncAppender）と、
+ * RingBufferJsonAppenderの各policyを比べます。イベントはDEBUG 3件に対しINFO 1件です。
+ * callerはログを出すスレッドが戻るまで、drainedは停止（全件の書き込み）までの件数/秒です。
+ * writtenはファイルに書かれた行数です（AsyncAppenderは捨てた数を数えないため、捨てた分はこれで比べます）。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.util.logging.LogAppenderBenchmark
+ * </pre>
+ */
+public class LogAppenderBenchmark {
+
+    private static final int EVENTS = 500_000;
+
+    private static final String PATTERN = "%d{yyyy-MMM-dd HH:mm:ss.SSS}[%level][%thread][%X{sessionId}][%X{userId}]"
+            + "[%logger]message:%msg%n";
+
+    private interface Factory {
+        Appender<ILoggingEvent> create(LoggerContext context, File dir) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("log-bench").toFile();
+        LoggerContext context = new LoggerContext();
+        System.out.println("cpus=" + Runtime.getRuntime().availableProcessors() + " events=" + EVENTS);
+        System.out.println("appender\tthreads\tcaller events/s\tdrained events/s\twritten");
+        for (int threads : new int[] { 1, 4 }) {
+            run("file(sync)", threads, context, dir, LogAppenderBenchmark::file);
+            run("async", threads, context, dir, LogAppenderBenchmark::async);
+            for (RingBufferJsonAppender.OverflowPolicy policy : RingBufferJsonAppender.OverflowPolicy.values()) {
+                run("ring(" + policy + ")", threads, context, dir, (c, d) -> ring(c, d, policy));
+            }
+        }
+    }
+
+    private static Appender<ILoggingEvent> file(LoggerContext context, File dir) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(context);
+        appender.setName("FILE");
+        appender.setFile(new File(dir, "file.log").getPath());
+        appender.setEncoder(encoder);
+        appender.start();
+        return appender;
+    }
+
+    private static Appender<ILoggingEvent> async(LoggerContext context, File dir) {
+        AsyncAppender appender = new AsyncAppender();
+        appender.setContext(context);
+        appender.setName("ASYNC");
+        appender.addAppender(file(context, dir));
+        appender.start();
+        return appender;
+    }
+
+    private static Appender<ILoggingEvent> ring(LoggerContext context, File dir,
+            RingBufferJsonAppender.OverflowPolicy policy) {
+        RingBufferJsonAppender appender = new RingBufferJsonAppender();
+        appender.setContext(context);
+        appender.setName("JSON");
+        appender.setFileNamePattern(new File(dir, "app-%d.json").getPath());
+        appender.setPolicy(policy);
+        appender.start();
+        return appender;
+    }
+
+    private static void run(String name, int threads, LoggerContext context, File dir, Factory factory)
+            throws Exception {
+        //1回目は暖機
+        measure(threads, factory.create(context, dir));
+        clear(dir);
+        long[] result = measure(threads, factory.create(context, dir));
+        long total = (long) EVENTS * threads;
+        long written = 0;
+        for (File file : dir.listFiles()) {
+            try (Stream<String> lines = Files.lines(file.toPath())) {
+                written += lines.filter(line -> !line.contains("events dropped")).count();
+            }
+        }
+        clear(dir);
+        System.out.printf("%s\t%d\t%,d\t%,d\t%,d%n", name, threads, total * 1_000_000_000L / result[0],
+                total * 1_000_000_000L / result[1], written);
+    }
+
+    private static void clear(File dir) {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+    }
+
+    //呼び出し側の経過時間, 停止までの経過時間
+    private static long[] measure(int threads, Appender<ILoggingEvent> appender) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < EVENTS; i++) {
+                    appender.doAppend(event(i % 4 == 0 ? Level.INFO : Level.DEBUG, i));
+                }
+            }, "bench-" + t);
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long produced = System.nanoTime() - begin;
+        appender.stop();
+        return new long[] { produced, System.nanoTime() - begin };
+    }
+
+    private static ILoggingEvent event(Level level, int i) {
+        LoggingEvent event = new LoggingEvent();
+        event.setTimeStamp(System.currentTimeMillis());
+        event.setLevel(level);
+        event.setLoggerName("sample.logic.MovieManagerImpl");
+        event.setThreadName(Thread.currentThread().getName());
+        event.setMessage("find movie id={} title={}");
+        event.setArgumentArray(new Object[] { i, "Seven Samurai" });
+        return event;
+    }
+}
@@ -0,0 +1,143 @@
+package sample.util.logging;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+@RunWith(JUnit4.class)
+public class RingBufferJsonAppenderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static LoggingEvent event(Level level, String message, Object... args) {
+        LoggingEvent event = new LoggingEvent();
+        event.setTimeStamp(1597280400123L);
+        event.setLevel(level);
+        event.setLoggerName("sample.Test");
+        event.setThreadName("main");
+        event.setMessage(message);
+        event.setArgumentArray(args);
+        event.setMDCPropertyMap(Collections.<String, String> emptyMap());
+        return event;
+    }
+
+    private static String encode(JsonLineEncoder encoder, LoggingEvent event) {
+        encoder.encode(event);
+        return new String(encoder.buffer(), 0, encoder.length(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEncode() {
+        JsonLineEncoder encoder = new JsonLineEncoder(ZoneOffset.ofHours(9));
+        assertEquals("{\"ts\":\"2020-08-13T10:00:00.123+09:00\",\"level\":\"INFO\",\"thread\":\"main\","
+                + "\"logger\":\"sample.Test\",\"message\":\"find id=1\"}\n",
+                encode(encoder, event(Level.INFO, "find id={}", 1)));
+
+        LoggingEvent withMdc = new LoggingEvent();
+        withMdc.setTimeStamp(1597280400005L);
+        withMdc.setLevel(Level.DEBUG);
+        withMdc.setLoggerName("sample.Test");
+        withMdc.setThreadName("main");
+        withMdc.setMessage("x");
+        withMdc.setMDCPropertyMap(Collections.singletonMap("userId", "u1"));
+        assertEquals("{\"ts\":\"2020-08-13T10:00:00.005+09:00\",\"level\":\"DEBUG\",\"thread\":\"main\","
+                + "\"logger\":\"sample.Test\",\"message\":\"x\",\"mdc\":{\"userId\":\"u1\"}}\n",
+                encode(encoder, withMdc));
+
+        //UTCは +00:00
+        assertTrue(encode(new JsonLineEncoder(ZoneOffset.UTC), event(Level.INFO, "x"))
+                .startsWith("{\"ts\":\"2020-08-13T01:00:00.123+00:00\""));
+    }
+
+    @Test
+    public void testEscape() {
+        JsonLineEncoder encoder = new JsonLineEncoder(ZoneOffset.UTC);
+        String line = encode(encoder, event(Level.WARN, "a\"b\\c\nd\te\u0001f"));
+        assertTrue(line, line.contains("\"message\":\"a\\\"b\\\\c\\nd\\te\\u0001f\""));
+
+        //UTF-8（日本語・サロゲートペア）。対になっていないサロゲートは ?
+        line = encode(encoder, event(Level.WARN, "映画🎬\uD800"));
+        assertTrue(line, line.contains("\"message\":\"映画🎬?\""));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        File dir = folder.getRoot();
+        RingBufferJsonAppender appender = new RingBufferJsonAppender();
+        appender.setContext(new LoggerContext());
+        appender.setName("JSON");
+        appender.setFileNamePattern(new File(dir, "app-%d.json").getPath());
+        appender.setCapacity(100);
+        appender.start();
+        assertTrue(appender.isStarted());
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    appender.doAppend(event(Level.INFO, "event {}", i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        appender.stop();
+
+        //INFOは混んでいても捨てない
+        assertEquals(0, appender.getDroppedCount());
+        List<String> lines = Files.readAllLines(new File(dir, "app-" + LocalDate.now() + ".json").toPath(),
+                StandardCharsets.UTF_8);
+        assertEquals(4000, lines.size());
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("{\"ts\":") && line.endsWith("}"));
+        }
+    }
+
+    @Test
+    public void testWriteAfterIdle() throws Exception {
+        File dir = folder.getRoot();
+        RingBufferJsonAppender appender = new RingBufferJsonAppender();
+        appender.setContext(new LoggerContext());
+        appender.setName("JSON");
+        appender.setFileNamePattern(new File(dir, "app.json").getPath());
+        appender.start();
+        try {
+            //書き込みスレッドが待っている間に置いたイベントも、停止を待たずに書かれる
+            for (int i = 0; i < 3; i++) {
+                Thread.sleep(300);
+                appender.doAppend(event(Level.INFO, "event {}", i));
+                File file = new File(dir, "app.json");
+                long deadline = System.currentTimeMillis() + 5000;
+                while (lines(file) < i + 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertEquals(i + 1, lines(file));
+            }
+        } finally {
+            appender.stop();
+        }
+    }
+
+    private static int lines(File file) throws Exception {
+        return file.exists() ? Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size() : 0;
+    }
+}
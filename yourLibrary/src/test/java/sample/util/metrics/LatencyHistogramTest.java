@@ -0,0 +1,101 @@
+package sample.util.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucket() {
+        //小さい値はそのまま
+        for (long v = 0; v < 8; v++) {
+            assertEquals(v, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(v)));
+        }
+        //値は階級の範囲に入り、誤差は12.5%以内
+        for (long v = 8; v < 1L << 40; v = v * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(v <= upper);
+            assertTrue(v > LatencyHistogram.upperBoundOf(bucket - 1));
+            assertTrue(upper - v <= v / 8);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.bucketOf(-1));
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertNear(500_000, snapshot.percentile(0.5));
+        assertNear(990_000, snapshot.percentile(0.99));
+        assertNear(999_000, snapshot.percentile(0.999));
+        assertNear(1_000_000, snapshot.max());
+        assertEquals(0, LatencyHistogram.Snapshot.EMPTY.percentile(0.5));
+    }
+
+    @Test
+    public void testMinus() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot diff = histogram.snapshot().minus(before);
+        assertEquals(10, diff.getCount());
+        assertNear(1_000_000, diff.percentile(0.5));
+    }
+
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800_000, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testRecentWindow() {
+        LatencyMetrics metrics = new LatencyMetrics("sample.Test#find()", 60, 2);
+        metrics.record(1000, false);
+        metrics.record(1000, true);
+        metrics.rotate();
+        metrics.rotate();
+        //最も古いスナップショットより後の呼び出しだけが直近の値になる
+        metrics.record(2_000_000, false);
+        metrics.refresh();
+        assertEquals(3, metrics.getCallCount());
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(1, metrics.getRecentCallCount());
+        assertEquals(0, metrics.getRecentErrorCount());
+        assertTrue(metrics.getRecentP50Micros() >= 2000);
+        assertTrue(metrics.getP50Micros() <= 2);
+    }
+
+    //階級の誤差（12.5%）の範囲内
+    private static void assertNear(long expected, long actual) {
+        assertTrue(expected + " : " + actual, actual >= expected && actual <= expected + expected / 8);
+    }
+
+}
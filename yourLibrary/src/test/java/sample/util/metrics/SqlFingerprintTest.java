@@ -0,0 +1,57 @@
+package sample.util.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SqlFingerprintTest {
+
+    @Test
+    public void testNormalize() {
+        assertEquals("SELECT ID, TITLE FROM MOVIE WHERE (ID = ?)",
+                SqlFingerprint.normalize("SELECT ID, TITLE\n  FROM MOVIE   WHERE (ID = ?)  "));
+        //リテラルは ? にする
+        assertEquals("SELECT * FROM USER WHERE ACCOUNT = ? AND AGE > ?",
+                SqlFingerprint.normalize("SELECT * FROM USER WHERE ACCOUNT = 'it''s' AND AGE > 20"));
+        //識別子中の数字はそのまま
+        assertEquals("SELECT T1.ID FROM MOVIE T1 LIMIT ?",
+                SqlFingerprint.normalize("SELECT T1.ID FROM MOVIE T1 LIMIT 10"));
+        //IN の ? の数によらず同じにする
+        assertEquals("SELECT ID FROM MOVIE WHERE (ID IN (?...))",
+                SqlFingerprint.normalize("SELECT ID FROM MOVIE WHERE (ID IN (?,?,?))"));
+        assertEquals(SqlFingerprint.of("SELECT ID FROM MOVIE WHERE ID IN (?)"),
+                SqlFingerprint.of("SELECT ID FROM MOVIE WHERE ID IN (?, ?, ?, ?)"));
+        assertEquals("", SqlFingerprint.of(null));
+    }
+
+    @Test
+    public void testRows() {
+        assertEquals(3, SqlProfiler.rowsOf(Arrays.asList(1, 2, 3)));
+        assertEquals(5, SqlProfiler.rowsOf(5));
+        assertEquals(1, SqlProfiler.rowsOf(Collections.singletonMap("ID", 1)));
+        assertEquals(0, SqlProfiler.rowsOf(null));
+        assertEquals(-1, SqlProfiler.rowsOf(new Object()));
+    }
+
+    @Test
+    public void testStats() {
+        SqlProfiler.clear();
+        SqlProfiler.statsOf("SELECT A").record(2_000_000, 10);
+        SqlProfiler.statsOf("SELECT A").record(4_000_000, -1);
+        SqlProfiler.statsOf("SELECT B").record(1_000_000, 1);
+        SqlStats a = SqlProfiler.getStatements().get(0);
+        assertEquals("SELECT A", a.getFingerprint());
+        assertEquals(2, a.getCount());
+        assertEquals(4_000_000, a.getMaxNanos());
+        assertEquals(10, a.getRows());
+        assertEquals(3000L, a.summary().get("meanMicros"));
+        SqlProfiler.clear();
+    }
+
+}
@@ -0,0 +1,65 @@
+package sample.util.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ViewProfileTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void testBound() {
+        //描画が大半
+        ViewProfile render = new ViewProfile("/view/movie/searchMovie.xhtml");
+        render.record(new long[] { -1, 1 * MS, -1, -1, -1, -1, 20 * MS }, new long[] { 0, 0, 0, 0, 0, 0, 2 * MS },
+                300, -1);
+        assertEquals("render", render.getBound());
+
+        //描画中でも、サービスの時間が大半ならサービス
+        ViewProfile service = new ViewProfile("/view/user/userList.xhtml");
+        service.record(new long[] { -1, 1 * MS, 1 * MS, 1 * MS, 1 * MS, 5 * MS, 20 * MS },
+                new long[] { 0, 0, 0, 0, 0, 4 * MS, 15 * MS }, 100, 120);
+        assertEquals("service", service.getBound());
+
+        assertEquals("-", new ViewProfile("/empty.xhtml").getBound());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSummary() {
+        ViewProfile profile = new ViewProfile("/view/movie/movieCart.xhtml");
+        profile.record(new long[] { -1, 1 * MS, 1 * MS, 1 * MS, 1 * MS, 4 * MS, 10 * MS },
+                new long[] { 0, 0, 0, 0, 0, 3 * MS, 1 * MS }, 200, 100);
+        //リダイレクトで描画しなかった場合
+        profile.record(new long[] { -1, 1 * MS, 1 * MS, 1 * MS, 1 * MS, 4 * MS, -1 },
+                new long[] { 0, 0, 0, 0, 0, 3 * MS, 0 }, -1, 300);
+
+        Map<String, Object> summary = profile.summary();
+        assertEquals(2L, summary.get("requests"));
+        Map<String, Map<String, Object>> phases = (Map<String, Map<String, Object>>) summary.get("phases");
+        assertEquals(2L, phases.get("INVOKE_APPLICATION").get("count"));
+        assertEquals(3000L, phases.get("INVOKE_APPLICATION").get("serviceMeanMicros"));
+        assertEquals(1L, phases.get("RENDER_RESPONSE").get("count"));
+        assertEquals(200L, summary.get("componentsMean"));
+        assertEquals(200L, summary.get("viewStateBytesMean"));
+        assertEquals(300L, summary.get("viewStateBytesMax"));
+    }
+
+    @Test
+    public void testMaxViews() {
+        PhaseProfileStore store = new PhaseProfileStore(2);
+        ViewProfile a = store.forView("/a.xhtml");
+        store.forView("/b.xhtml");
+        //上限を超えた画面はまとめる
+        assertEquals(PhaseProfileStore.OTHER_VIEWS, store.forView("/c.xhtml").getName());
+        assertSame(a, store.forView("/a.xhtml"));
+        assertEquals(3, store.getViews().size());
+    }
+
+}
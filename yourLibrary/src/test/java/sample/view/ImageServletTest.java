@@ -0,0 +1,60 @@
+package sample.view;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import sample.logic.image.ContentHash;
+
+@RunWith(JUnit4.class)
+public class ImageServletTest {
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[] { 0, 99 }, ImageServlet.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] { 500, 999 }, ImageServlet.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] { 900, 999 }, ImageServlet.parseRange("bytes=-100", 1000));
+        //末尾を超える指定は末尾まで
+        assertArrayEquals(new long[] { 900, 999 }, ImageServlet.parseRange("bytes=900-5000", 1000));
+
+        //範囲外は416
+        assertEquals(0, ImageServlet.parseRange("bytes=1000-", 1000).length);
+
+        //指定なし・複数範囲・解釈できない場合は全体
+        assertNull(ImageServlet.parseRange(null, 1000));
+        assertNull(ImageServlet.parseRange("bytes=0-1,5-6", 1000));
+        assertNull(ImageServlet.parseRange("items=0-1", 1000));
+        assertNull(ImageServlet.parseRange("bytes=a-b", 1000));
+        //終了位置が開始位置より前の指定は無効（416ではなく全体）
+        assertNull(ImageServlet.parseRange("bytes=50-10", 1000));
+        assertNull(ImageServlet.parseRange("bytes=2000-10", 1000));
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(ImageServlet.matches("\"abc-200\"", "\"abc-200\""));
+        assertTrue(ImageServlet.matches("\"x\", W/\"abc-200\"", "\"abc-200\""));
+        assertTrue(ImageServlet.matches("*", "\"abc-200\""));
+        assertFalse(ImageServlet.matches("\"abc-64\"", "\"abc-200\""));
+        assertFalse(ImageServlet.matches(null, "\"abc-200\""));
+    }
+
+    @Test
+    public void testContentType() {
+        assertEquals("image/jpeg", ImageServlet.contentTypeOf(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0 }));
+        assertEquals("image/png", ImageServlet.contentTypeOf(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0 }));
+        assertEquals("application/octet-stream", ImageServlet.contentTypeOf(new byte[] { 1, 2 }));
+    }
+
+    @Test
+    public void testUrl() {
+        final String hash = ContentHash.sha256Hex(new byte[] { 1, 2, 3 });
+        assertTrue(ContentHash.isValid(hash));
+        assertFalse(ContentHash.isValid("../etc"));
+        assertEquals("/image/5/" + hash + "?size=200", ImageServlet.urlOf(5, hash, 200));
+        assertEquals("/image/5/" + hash, ImageServlet.urlOf(5, hash, 0));
+    }
+
+}
@@ -0,0 +1,61 @@
+package sample.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import sample.logic.dto.MovieRow;
+import sample.util.collection.LongArrays;
+
+/**
+ * ビューの状態（セッション・Flashに保存されるもの）のシリアライズ後のサイズの比較。
+ * カートを行（MovieRow）のリストで持つ方法と、映画IDの配列で持つ方法を比べます。
+ * <pre>
+ * java -cp target/test-classes:target/classes sample.view.ViewStateSizeBenchmark 10 200
+ * </pre>
+ * 引数はカートの映画数、あらすじの文字数です。
+ */
+public class ViewStateSizeBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int cartSize = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int outlineLength = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        StringBuilder outline = new StringBuilder();
+        for (int i = 0; i < outlineLength; i++) {
+            outline.append((char) ('あ' + i % 80));
+        }
+        ArrayList<MovieRow> rows = new ArrayList<>();
+        long[] ids = LongArrays.EMPTY;
+        for (int i = 0; i < cartSize; i++) {
+            long id = 1000 + i;
+            rows.add(new MovieRow(id, "映画のタイトル" + i, "SF", outline.toString(), false, "poster" + i + ".jpg",
+                    "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcd" + (10 + i)));
+            ids = LongArrays.append(ids, id);
+        }
+
+        //Flash: カートの中身（検索画面→カート画面）
+        report("flash rows", rows);
+        report("flash ids", ids.clone());
+
+        //カート画面: カート・借りる映画に半分ずつ
+        List<MovieRow> cart = new ArrayList<>(rows.subList(0, cartSize / 2));
+        List<MovieRow> rent = new ArrayList<>(rows.subList(cartSize / 2, cartSize));
+        report("view rows", new Object[] { cart, rent });
+        report("view ids", new Object[] { Arrays.copyOf(ids, cartSize / 2),
+                Arrays.copyOfRange(ids, cartSize / 2, cartSize) });
+    }
+
+    private static void report(String name, Serializable state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        System.out.printf("%-12s %6d bytes%n", name, bytes.size());
+    }
+
+}
@@ -0,0 +1,105 @@
+package sample.view.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import sample.entity.Identifiable;
+
+/**
+ * 複数行選択時の行キー→行の解決（IdEntityListDataModel.getRowData）の比較。
+ * 一覧を毎回探す方法（以前の実装）と、ID→行番号の索引を引く方法を比べます。
+ * PrimeFaces はajaxのリクエストごとに、選択行の数だけgetRowDataを呼びます。
+ * <pre>
+ * java -cp target/test-classes:target/classes:(依存jar) sample.view.dto.RowKeyLookupBenchmark 1000
+ * </pre>
+ * 引数は選択する行数です（一覧の行数は1千・1万・10万）。
+ */
+public class RowKeyLookupBenchmark {
+
+    private static final int[] ROWS = { 1000, 10000, 100000 };
+
+    private static final int ROUNDS = 5;
+
+    private static class Row implements Identifiable {
+        private final long id;
+
+        Row(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+    }
+
+    public static void main(String[] args) {
+        int selected = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        System.out.printf("%8s %8s %14s %14s %14s%n", "rows", "selected", "scan(ms/req)", "index(ms/req)",
+                "reused(ms/req)");
+        for (int rows : ROWS) {
+            List<Row> data = new ArrayList<>(rows);
+            Random random = new Random(1);
+            for (int i = 0; i < rows; i++) {
+                data.add(new Row(1_000_000L + random.nextInt(1_000_000) * 1000L + i));
+            }
+            //選択した行のキー（PrimeFacesから文字列で渡される）
+            List<String> keys = new ArrayList<>();
+            List<Row> shuffled = new ArrayList<>(data);
+            Collections.shuffle(shuffled, random);
+            for (Row row : shuffled.subList(0, Math.min(selected, rows))) {
+                keys.add(Long.toString(row.getId()));
+            }
+
+            //ウォームアップ後、リクエストごとの時間を測る（indexは新しいモデルで索引を作る分を含む）
+            double scan = 0;
+            double indexed = 0;
+            double reused = 0;
+            //ビュースコープのモデルは次のリクエストでも同じ索引を使う
+            IdEntityListDataModel<Row> viewModel = new IdEntityListDataModel<>(data);
+            for (int round = 0; round < ROUNDS + 2; round++) {
+                long start = System.nanoTime();
+                long found = 0;
+                for (String key : keys) {
+                    found += scan(data, key) != null ? 1 : 0;
+                }
+                long scanNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                IdEntityListDataModel<Row> model = new IdEntityListDataModel<>(data);
+                for (String key : keys) {
+                    found -= model.getRowData(key) != null ? 1 : 0;
+                }
+                long indexNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (String key : keys) {
+                    found += viewModel.getRowData(key) != null ? 1 : 0;
+                }
+                found -= keys.size();
+                long reusedNanos = System.nanoTime() - start;
+                if (found != 0) {
+                    throw new IllegalStateException();
+                }
+                if (round >= 2) {
+                    scan += scanNanos / 1e6 / ROUNDS;
+                    indexed += indexNanos / 1e6 / ROUNDS;
+                    reused += reusedNanos / 1e6 / ROUNDS;
+                }
+            }
+            System.out.printf("%8d %8d %14.3f %14.3f %14.3f%n", rows, keys.size(), scan, indexed, reused);
+        }
+    }
+
+    //以前の実装
+    private static Row scan(List<Row> entities, String key) {
+        long id = Long.parseLong(key);
+        Optional<Row> entity = entities.stream().filter(e -> e.getId() == id).findFirst();
+        return entity.orElse(null);
+    }
+
+}